@@ -4,9 +4,12 @@ package us.shiroyama.android.my_repositories;
 import android.app.Application;
 
 import com.facebook.stetho.Stetho;
+import com.jakewharton.picasso.OkHttp3Downloader;
 import com.jakewharton.threetenabp.AndroidThreeTen;
+import com.squareup.picasso.Picasso;
 
 import timber.log.Timber;
+import us.shiroyama.android.my_repositories.common.OkHttpProvider;
 
 /**
  * Custom {@link Application}
@@ -21,8 +24,13 @@ public class MyApplication extends Application {
     super.onCreate();
 
     AndroidThreeTen.init(this);
-    Stetho.initializeWithDefaults(this);
+    OkHttpProvider.INSTANCE.init(this);
+    // avatars share the connection pool and the disk cache with the API
+    Picasso.setSingletonInstance(new Picasso.Builder(this)
+        .downloader(new OkHttp3Downloader(OkHttpProvider.INSTANCE.get()))
+        .build());
     if (BuildConfig.DEBUG) {
+      Stetho.initializeWithDefaults(this);
       Timber.plant(new Timber.DebugTree());
     }
   }
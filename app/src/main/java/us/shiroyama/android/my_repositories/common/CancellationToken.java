@@ -0,0 +1,113 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cooperative cancellation shared by every stage of a task
+ * <p>
+ * The token of the running task is bound to the worker thread, so lower layers can check it with {@link #current()}
+ * and register callbacks such as cancelling an HTTP call without depending on the task itself.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class CancellationToken {
+  /**
+   * never cancelled, returned by {@link #current()} outside of a task
+   */
+  public static final CancellationToken NONE = new CancellationToken(false);
+
+  private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+  private final boolean cancellable;
+
+  @NonNull
+  private final List<Runnable> callbacks = new ArrayList<>();
+
+  private boolean cancelled;
+
+  public CancellationToken() {
+    this(true);
+  }
+
+  private CancellationToken(boolean cancellable) {
+    this.cancellable = cancellable;
+  }
+
+  /**
+   * @return token bound to the current thread, or {@link #NONE}
+   */
+  @NonNull
+  public static CancellationToken current() {
+    CancellationToken token = CURRENT.get();
+    return token == null ? NONE : token;
+  }
+
+  /**
+   * Binds the token to the current thread
+   *
+   * @return previously bound token to restore afterwards
+   */
+  @Nullable
+  public static CancellationToken bind(@Nullable CancellationToken token) {
+    CancellationToken previous = CURRENT.get();
+    if (token == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(token);
+    }
+    return previous;
+  }
+
+  public void cancel() {
+    List<Runnable> toRun;
+    synchronized (this) {
+      if (!cancellable || cancelled) {
+        return;
+      }
+      cancelled = true;
+      toRun = new ArrayList<>(callbacks);
+      callbacks.clear();
+    }
+    for (Runnable callback : toRun) {
+      callback.run();
+    }
+  }
+
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * @throws InterruptedIOException when cancelled, so that callers declaring {@link java.io.IOException} stop early
+   */
+  public void throwIfCancelled() throws InterruptedIOException {
+    if (isCancelled()) {
+      throw new InterruptedIOException("cancelled");
+    }
+  }
+
+  /**
+   * Runs the callback on cancel, or right away when already cancelled
+   */
+  public void register(@NonNull Runnable callback) {
+    synchronized (this) {
+      if (!cancelled) {
+        if (cancellable) {
+          callbacks.add(callback);
+        }
+        return;
+      }
+    }
+    callback.run();
+  }
+
+  public synchronized void unregister(@NonNull Runnable callback) {
+    callbacks.remove(callback);
+  }
+}
@@ -4,16 +4,21 @@ import android.support.annotation.NonNull;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import org.threeten.bp.DateTimeException;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
 import org.threeten.bp.ZonedDateTime;
 import org.threeten.bp.format.DateTimeFormatter;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.EntityTypeAdapterFactory;
 
 /**
  * Singleton {@link Gson} Provider
@@ -26,7 +31,8 @@ public enum GsonProvider implements Singleton<Gson> {
 
   @NonNull
   private final Gson gson = new GsonBuilder()
-      .registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeDeserializer())
+      .registerTypeAdapter(ZonedDateTime.class, new ZonedDateTimeTypeAdapter())
+      .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
       .create();
 
   @NonNull
@@ -36,14 +42,77 @@ public enum GsonProvider implements Singleton<Gson> {
   }
 
   /**
-   * {@link TypeAdapter} for {@link ZonedDateTime}
+   * Streaming {@link TypeAdapter} for {@link ZonedDateTime}
+   * <p>
+   * GitHub always sends UTC timestamps like <code>2018-01-26T05:21:03Z</code>, which are parsed here by hand
+   * without going through {@link DateTimeFormatter}. Any other shape falls back to {@link DateTimeFormatter#ISO_DATE_TIME}.
    */
-  private static class ZonedDateTimeDeserializer implements JsonDeserializer<ZonedDateTime> {
+  static class ZonedDateTimeTypeAdapter extends TypeAdapter<ZonedDateTime> {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+
+    private static final int UTC_LENGTH = "yyyy-MM-ddTHH:mm:ssZ".length();
+
+    @Override
+    public void write(JsonWriter out, ZonedDateTime value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+        return;
+      }
+      out.value(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(value));
+    }
+
     @Override
-    public ZonedDateTime deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-      String zonedDateTime = json.getAsString();
-      DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_DATE_TIME;
-      return ZonedDateTime.parse(zonedDateTime, dateTimeFormatter);
+    public ZonedDateTime read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      String value = in.nextString();
+      try {
+        return parse(value);
+      } catch (DateTimeException e) {
+        throw new JsonParseException(value, e);
+      }
+    }
+
+    static ZonedDateTime parse(@NonNull String value) {
+      if (value.length() == UTC_LENGTH
+          && value.charAt(4) == '-'
+          && value.charAt(7) == '-'
+          && value.charAt(10) == 'T'
+          && value.charAt(13) == ':'
+          && value.charAt(16) == ':'
+          && value.charAt(19) == 'Z') {
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        int hour = digits(value, 11, 13);
+        int minute = digits(value, 14, 16);
+        int second = digits(value, 17, 19);
+        if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0) {
+          try {
+            return ZonedDateTime.of(year, month, day, hour, minute, second, 0, UTC);
+          } catch (DateTimeException ignored) {
+            // out of range fields, let the formatter report them
+          }
+        }
+      }
+      return ZonedDateTime.parse(value, DateTimeFormatter.ISO_DATE_TIME);
+    }
+
+    /**
+     * @return decimal value of the characters in [from, to), or -1 if any of them is not a digit
+     */
+    private static int digits(@NonNull String value, int from, int to) {
+      int result = 0;
+      for (int i = from; i < to; i++) {
+        int digit = value.charAt(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        result = result * 10 + digit;
+      }
+      return result;
     }
   }
 }
@@ -0,0 +1,122 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Cache policy for the repository list endpoint, <code>users/{user}/repos</code>
+ * <p>
+ * {@link #networkInterceptor()} replaces the <code>Cache-Control</code> of responses with our own <code>max-age</code>,
+ * so the on-disk cache answers repeated requests without touching the network.
+ * {@link #offlineInterceptor()} falls back to a cached response up to <code>max-stale</code> old when the network fails.
+ * Requests sending {@link #FORCE_NETWORK} or their own validators always go to the network.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class HttpCachePolicy {
+  public static final int DEFAULT_MAX_AGE_SECONDS = 60;
+
+  public static final int DEFAULT_MAX_STALE_SECONDS = (int) TimeUnit.DAYS.toSeconds(7);
+
+  /**
+   * Value of <code>Cache-Control</code> request header for an explicit refresh
+   */
+  public static final String FORCE_NETWORK = CacheControl.FORCE_NETWORK.toString();
+
+  /**
+   * Value of <code>Cache-Control</code> request header for a request which must not reach the network,
+   * answered with <code>504</code> when the HTTP cache has no fresh response
+   */
+  public static final String ONLY_IF_CACHED = new CacheControl.Builder().onlyIfCached().build().toString();
+
+  private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+  private static final String HEADER_PRAGMA = "Pragma";
+
+  private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
+  private static final Pattern USER_REPOS = Pattern.compile("^/users/[^/]+/repos/?$");
+
+  private final int maxAgeSeconds;
+
+  private final int maxStaleSeconds;
+
+  public HttpCachePolicy() {
+    this(DEFAULT_MAX_AGE_SECONDS, DEFAULT_MAX_STALE_SECONDS);
+  }
+
+  public HttpCachePolicy(int maxAgeSeconds, int maxStaleSeconds) {
+    this.maxAgeSeconds = maxAgeSeconds;
+    this.maxStaleSeconds = maxStaleSeconds;
+  }
+
+  /**
+   * To be added with {@link okhttp3.OkHttpClient.Builder#addNetworkInterceptor(Interceptor)}
+   */
+  @NonNull
+  public Interceptor networkInterceptor() {
+    return chain -> {
+      Request request = chain.request();
+      Response response = chain.proceed(request);
+      if (!appliesTo(request) || !response.isSuccessful()) {
+        return response;
+      }
+      return response.newBuilder()
+          .removeHeader(HEADER_PRAGMA)
+          .header(HEADER_CACHE_CONTROL, new CacheControl.Builder().maxAge(maxAgeSeconds, TimeUnit.SECONDS).build().toString())
+          .build();
+    };
+  }
+
+  /**
+   * To be added with {@link okhttp3.OkHttpClient.Builder#addInterceptor(Interceptor)}
+   */
+  @NonNull
+  public Interceptor offlineInterceptor() {
+    return chain -> {
+      Request request = chain.request();
+      if (!appliesTo(request) || !mayUseCache(request)) {
+        return chain.proceed(request);
+      }
+      try {
+        return chain.proceed(request);
+      } catch (IOException e) {
+        if (chain.call().isCanceled()) {
+          throw e;
+        }
+        Request cacheOnly = request.newBuilder()
+            .cacheControl(new CacheControl.Builder()
+                .onlyIfCached()
+                .maxStale(maxStaleSeconds, TimeUnit.SECONDS)
+                .build())
+            .build();
+        Response cached = chain.proceed(cacheOnly);
+        if (cached.code() == HTTP_GATEWAY_TIMEOUT) {
+          // nothing usable on disk
+          cached.close();
+          throw e;
+        }
+        return cached;
+      }
+    };
+  }
+
+  private boolean appliesTo(@NonNull Request request) {
+    return "GET".equals(request.method()) && USER_REPOS.matcher(request.url().encodedPath()).matches();
+  }
+
+  private boolean mayUseCache(@NonNull Request request) {
+    return !request.cacheControl().noCache()
+        && request.header("If-None-Match") == null
+        && request.header("If-Modified-Since") == null;
+  }
+}
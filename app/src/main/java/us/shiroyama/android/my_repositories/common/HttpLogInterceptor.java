@@ -0,0 +1,134 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import timber.log.Timber;
+
+/**
+ * Logging {@link Interceptor} which never buffers more than <code>maxBodyBytes</code> of a response
+ * <p>
+ * Bodies are read with {@link Response#peekBody(long)}, so the caller still streams the original body
+ * and a large page is not kept twice in memory. Unsampled requests and {@link Level#NONE} pass through untouched.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class HttpLogInterceptor implements Interceptor {
+  public enum Level {
+    NONE,
+    HEADERS,
+    BODY
+  }
+
+  /**
+   * Log output
+   */
+  public interface Logger {
+    void log(@NonNull String message);
+
+    Logger TIMBER = message -> Timber.tag("OkHttp").d(message);
+  }
+
+  private static final long DEBUG_MAX_BODY_BYTES = 16L * 1024L;
+
+  private static final String REDACTED = "██";
+
+  @NonNull
+  private final Level level;
+
+  private final int sampleRate;
+
+  private final long maxBodyBytes;
+
+  @NonNull
+  private final Logger logger;
+
+  @NonNull
+  private final AtomicLong counter = new AtomicLong();
+
+  /**
+   * @param sampleRate   logs 1 in <code>sampleRate</code> requests
+   * @param maxBodyBytes cap of a logged body, only used with {@link Level#BODY}
+   */
+  public HttpLogInterceptor(@NonNull Level level, int sampleRate, long maxBodyBytes, @NonNull Logger logger) {
+    if (sampleRate < 1) {
+      throw new IllegalArgumentException("sampleRate must be positive: " + sampleRate);
+    }
+    this.level = level;
+    this.sampleRate = sampleRate;
+    this.maxBodyBytes = maxBodyBytes;
+    this.logger = logger;
+  }
+
+  /**
+   * Bodies of every request in debug builds, nothing in release builds where no Timber tree is planted
+   */
+  @NonNull
+  public static HttpLogInterceptor forBuild(boolean debug) {
+    return debug
+        ? new HttpLogInterceptor(Level.BODY, 1, DEBUG_MAX_BODY_BYTES, Logger.TIMBER)
+        : new HttpLogInterceptor(Level.NONE, 1, 0L, Logger.TIMBER);
+  }
+
+  @Override
+  public Response intercept(@NonNull Chain chain) throws IOException {
+    Request request = chain.request();
+    if (level == Level.NONE || counter.getAndIncrement() % sampleRate != 0) {
+      return chain.proceed(request);
+    }
+
+    logger.log("--> " + request.method() + " " + request.url());
+    logHeaders(request.headers());
+
+    long startNs = System.nanoTime();
+    Response response;
+    try {
+      response = chain.proceed(request);
+    } catch (IOException e) {
+      logger.log("<-- HTTP FAILED: " + e);
+      throw e;
+    }
+    long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+
+    logger.log("<-- " + response.code() + " " + response.message() + " " + response.request().url() + " (" + tookMs + "ms)");
+    logHeaders(response.headers());
+    if (level == Level.BODY && response.body() != null) {
+      logBody(response);
+    }
+    return response;
+  }
+
+  private void logHeaders(@NonNull Headers headers) {
+    for (int i = 0, size = headers.size(); i < size; i++) {
+      String name = headers.name(i);
+      String value = isSensitive(name) ? REDACTED : headers.value(i);
+      logger.log(name + ": " + value);
+    }
+  }
+
+  private void logBody(@NonNull Response response) throws IOException {
+    long contentLength = response.body().contentLength();
+    ResponseBody peeked = response.peekBody(maxBodyBytes);
+    String body = peeked.string();
+    boolean truncated = contentLength == -1L ? peeked.contentLength() == maxBodyBytes : contentLength > maxBodyBytes;
+    logger.log(body);
+    logger.log(truncated
+        ? "<-- END HTTP (truncated to " + maxBodyBytes + " bytes)"
+        : "<-- END HTTP (" + peeked.contentLength() + "-byte body)");
+  }
+
+  private static boolean isSensitive(@NonNull String name) {
+    return "Authorization".equalsIgnoreCase(name)
+        || "Cookie".equalsIgnoreCase(name)
+        || "Set-Cookie".equalsIgnoreCase(name);
+  }
+}
@@ -1,14 +1,21 @@
 package us.shiroyama.android.my_repositories.common;
 
+import android.content.Context;
 import android.support.annotation.NonNull;
 
 import com.facebook.stetho.okhttp3.StethoInterceptor;
 
+import java.io.File;
+
+import okhttp3.Cache;
 import okhttp3.OkHttpClient;
-import okhttp3.logging.HttpLoggingInterceptor;
+import us.shiroyama.android.my_repositories.BuildConfig;
 
 /**
  * Singleton {@link OkHttpClient} Provider
+ * <p>
+ * The client has no {@link Cache} until {@link #init(Context)} is called.
+ * Response bodies are only logged and inspected with Stetho in debug builds.
  *
  * @author Fumihiko Shiroyama
  */
@@ -16,16 +23,37 @@ import okhttp3.logging.HttpLoggingInterceptor;
 public enum OkHttpProvider implements Singleton<OkHttpClient> {
   INSTANCE;
 
+  private static final String CACHE_DIR = "http";
+
+  private static final long MAX_CACHE_BYTES = 20L * 1024L * 1024L;
+
   @NonNull
-  private final OkHttpClient okHttpClient;
+  private volatile OkHttpClient okHttpClient;
 
   {
-    HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
-    loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
+    HttpCachePolicy cachePolicy = new HttpCachePolicy();
+
+    OkHttpClient.Builder builder = new OkHttpClient.Builder()
+        .addInterceptor(cachePolicy.offlineInterceptor())
+        .addNetworkInterceptor(cachePolicy.networkInterceptor())
+        .addNetworkInterceptor(RateLimitBudget.Factory.INSTANCE.get().interceptor())
+        .addInterceptor(HttpLogInterceptor.forBuild(BuildConfig.DEBUG));
+    if (BuildConfig.DEBUG) {
+      builder.addNetworkInterceptor(new StethoInterceptor());
+    }
+    okHttpClient = builder.build();
+  }
 
-    okHttpClient = new OkHttpClient.Builder()
-        .addNetworkInterceptor(new StethoInterceptor())
-        .addInterceptor(loggingInterceptor)
+  /**
+   * Adds a size-bounded on-disk cache under the app cache dir.
+   * Call it from {@link android.app.Application#onCreate()} before the client is handed out.
+   */
+  public synchronized void init(@NonNull Context context) {
+    if (okHttpClient.cache() != null) {
+      return;
+    }
+    okHttpClient = okHttpClient.newBuilder()
+        .cache(new Cache(new File(context.getCacheDir(), CACHE_DIR), MAX_CACHE_BYTES))
         .build();
   }
 
@@ -0,0 +1,143 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Headers;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Rate limit budget shared by every request to the API
+ * <p>
+ * Tracks <code>X-RateLimit-*</code> headers of network responses through {@link #interceptor()},
+ * so callers can fail fast or postpone work instead of sending requests which are sure to be rejected.
+ * The budget is unknown until the first response and again after its reset time.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RateLimitBudget {
+  public static final String HEADER_LIMIT = "X-RateLimit-Limit";
+
+  public static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+
+  public static final String HEADER_RESET = "X-RateLimit-Reset";
+
+  private static final int UNKNOWN = -1;
+
+  private int limit = UNKNOWN;
+
+  private int remaining = UNKNOWN;
+
+  private long resetAtMillis;
+
+  /**
+   * Updates the budget from response headers, ignoring responses without them, e.g. avatars
+   */
+  public synchronized void update(@NonNull Headers headers) {
+    int newLimit = parseInt(headers.get(HEADER_LIMIT));
+    int newRemaining = parseInt(headers.get(HEADER_REMAINING));
+    long newResetAtMillis = parseSecondsToMillis(headers.get(HEADER_RESET));
+    if (newLimit == UNKNOWN || newRemaining == UNKNOWN || newResetAtMillis == 0L) {
+      return;
+    }
+    limit = newLimit;
+    remaining = newRemaining;
+    resetAtMillis = newResetAtMillis;
+  }
+
+  /**
+   * @return true if the API will reject requests until {@link #getResetAtMillis()}
+   */
+  public synchronized boolean isExhausted() {
+    expireIfReset();
+    return remaining == 0;
+  }
+
+  /**
+   * @param fraction e.g. <code>0.2f</code> for less than 20% of the limit remaining
+   */
+  public synchronized boolean isLow(float fraction) {
+    expireIfReset();
+    return limit > 0 && remaining != UNKNOWN && remaining < limit * fraction;
+  }
+
+  /**
+   * @return epoch millis at which the budget is restored, or 0 if unknown
+   */
+  public synchronized long getResetAtMillis() {
+    expireIfReset();
+    return resetAtMillis;
+  }
+
+  public synchronized long millisUntilReset() {
+    expireIfReset();
+    return resetAtMillis == 0L ? 0L : Math.max(0L, resetAtMillis - currentTimeMillis());
+  }
+
+  /**
+   * To be added with {@link okhttp3.OkHttpClient.Builder#addNetworkInterceptor(Interceptor)},
+   * so responses from the HTTP cache do not count
+   */
+  @NonNull
+  public Interceptor interceptor() {
+    return chain -> {
+      Response response = chain.proceed(chain.request());
+      update(response.headers());
+      return response;
+    };
+  }
+
+  long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void expireIfReset() {
+    if (resetAtMillis != 0L && currentTimeMillis() >= resetAtMillis) {
+      limit = UNKNOWN;
+      remaining = UNKNOWN;
+      resetAtMillis = 0L;
+    }
+  }
+
+  /**
+   * @return millis of a header in seconds, e.g. epoch millis of <code>X-RateLimit-Reset</code>, or 0 if absent
+   */
+  public static long parseSecondsToMillis(@Nullable String value) {
+    if (value == null) {
+      return 0L;
+    }
+    try {
+      return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+
+  private static int parseInt(@Nullable String value) {
+    if (value == null) {
+      return UNKNOWN;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return UNKNOWN;
+    }
+  }
+
+  public enum Factory implements Singleton<RateLimitBudget> {
+    INSTANCE;
+
+    @NonNull
+    private final RateLimitBudget instance = new RateLimitBudget();
+
+    @NonNull
+    @Override
+    public RateLimitBudget get() {
+      return instance;
+    }
+  }
+}
@@ -2,12 +2,16 @@ package us.shiroyama.android.my_repositories.domain.usecase;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.squareup.otto.Bus;
 
+import java.io.IOException;
 import java.util.List;
 
+import timber.log.Timber;
 import us.shiroyama.android.my_repositories.common.BusProvider;
+import us.shiroyama.android.my_repositories.common.CancellationToken;
 import us.shiroyama.android.my_repositories.domain.event.FailureEvent;
 import us.shiroyama.android.my_repositories.domain.event.SuccessEvent;
 import us.shiroyama.android.my_repositories.domain.mapper.RepositoryMapper;
@@ -17,8 +21,12 @@ import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskQueue;
 import us.shiroyama.android.my_repositories.infrastructure.entity.GitHubErrorEntity;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
 import us.shiroyama.android.my_repositories.infrastructure.repository.GitHubInfraRepository;
 import us.shiroyama.android.my_repositories.infrastructure.repository.GitHubRepository;
+import us.shiroyama.android.my_repositories.infrastructure.repository.RefreshedRepositories;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.RepositoryPage;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RepositoryListOptions;
 
 /**
  * UseCase to get {@link Repository}
@@ -39,25 +47,195 @@ public class GetRepositories extends UseCase<GetRepositories.Param> {
     this.repositoryMapper = repositoryMapper;
   }
 
+  /**
+   * A refresh is a conditional full sync, and an {@link Param#incrementalRefresh(String, RepositoryListOptions) incremental} one
+   * only fetches repositories updated after the newest cached one.
+   * Otherwise posts cached repositories right away and, when they are stale, enqueues a revalidation
+   * which posts another {@link OnSuccessGetRepositories} only if something has changed.
+   * A revalidated paged list posts its first page again only if that page has changed, to be merged into the pages shown.
+   * The revalidation shares the token of this task, so cancelling its ticket stops the revalidation as well.
+   * Cached repositories served by the repository while the circuit to the API is open are posted marked as stale,
+   * and a refresh rejected by the rate limit fails with the {@link RateLimitException} carrying the reset time.
+   * A paged load posts each page as soon as it is read, together with the {@link Param} of the next one.
+   * <p>
+   * Loading runs on the I/O pool and mapping is handed over to the compute pool.
+   * A cancelled task stops between these stages and never posts to {@link Bus}.
+   */
   @Override
   protected Task buildTask(Param param) {
-    return new Task() {
+    Task.Priority priority = param.refresh ? Task.Priority.REFRESH : Task.Priority.INTERACTIVE;
+    return new Task(priority, Task.Pool.IO) {
       @Override
       public void run() {
         try {
-          List<RepositoryEntity> entities = param.refresh
-              ? gitHubRepository.refreshUserRepositories(param.account)
-              : gitHubRepository.getUserRepositories(param.account);
-          List<Repository> repositories = repositoryMapper.convertList(entities);
-          bus.post(new OnSuccessGetRepositories(repositories));
+          if (param.isPaged()) {
+            loadPage(param, priority, getCancellationToken());
+            return;
+          }
+          List<RepositoryEntity> entities;
+          boolean stale = false;
+          if (param.refresh) {
+            RefreshedRepositories refreshed = param.incremental
+                ? gitHubRepository.refreshUserRepositoriesIncrementally(param.account, param.options)
+                : gitHubRepository.refreshUserRepositories(param.account, param.options);
+            entities = refreshed.getRepositories();
+            stale = refreshed.isStale();
+          } else {
+            entities = gitHubRepository.getUserRepositories(param.account, param.options);
+          }
+          if (isCancelled()) {
+            return;
+          }
+          taskQueue.enqueue(buildMappingTask(param.account, entities, priority, getCancellationToken(), stale));
+          if (!param.refresh && gitHubRepository.isStale(param.account)) {
+            taskQueue.enqueue(buildRevalidationTask(param.account, param.options, getCancellationToken()));
+          }
+        } catch (RateLimitException e) {
+          // posted as it is, so subscribers can tell when to try again
+          if (!isCancelled()) {
+            bus.post(new OnFailureGetRepositories(e));
+          }
         } catch (ApiException e) {
+          if (isCancelled()) {
+            return;
+          }
           GitHubErrorEntity gitHubErrorEntity = e.getGitHubErrorEntity();
           String message = gitHubErrorEntity == null
               ? e.getMessage()
               : gitHubErrorEntity.getMessage();
           bus.post(new OnFailureGetRepositories(new Exception(message)));
         } catch (Exception e) {
-          bus.post(new OnFailureGetRepositories(e));
+          // a cancelled call surfaces as an IOException, which nobody is waiting for
+          if (!isCancelled()) {
+            bus.post(new OnFailureGetRepositories(e));
+          }
+        }
+      }
+    };
+  }
+
+  private void loadPage(@NonNull Param param, @NonNull Task.Priority priority, @NonNull CancellationToken cancellationToken) throws IOException, ApiException {
+    RepositoryPage page = gitHubRepository.getUserRepositoriesPage(param.account, param.after, param.pageSize);
+    if (cancellationToken.isCancelled()) {
+      return;
+    }
+    boolean firstPage = param.after == null;
+    taskQueue.enqueue(buildMappingTask(param.account, page.getRepositories(), priority, cancellationToken, false, param.nextPage(page.getNext()), !firstPage, false));
+    if (firstPage && gitHubRepository.isStale(param.account)) {
+      taskQueue.enqueue(buildRevalidationTask(param.account, param.options, param.pageSize, page, cancellationToken));
+    }
+  }
+
+  /**
+   * The result is delivered through {@link Bus}, so every caller attached to the in-flight task receives it
+   */
+  @NonNull
+  @Override
+  protected Object getInFlightKey(Param param) {
+    return param;
+  }
+
+  /**
+   * Background revalidation of stale repositories. Failures are only logged
+   * because the screen already shows the cached ones.
+   *
+   * @param cancellationToken token of the load which posted the cached repositories
+   */
+  @NonNull
+  Task buildRevalidationTask(@NonNull String account, @NonNull RepositoryListOptions options, @NonNull CancellationToken cancellationToken) {
+    return buildRevalidationTask(account, options, Param.UNPAGED, null, cancellationToken);
+  }
+
+  /**
+   * A paged list posts its first page again only if it differs from the one shown or the cache turned out to be stale,
+   * as an {@link OnSuccessGetRepositories#isFirstPageUpdate() update} of the pages shown rather than a replacement.
+   *
+   * @param pageSize       page size of the load being revalidated
+   * @param shownFirstPage first page posted by the load being revalidated, or null if it is not paged
+   */
+  @NonNull
+  Task buildRevalidationTask(@NonNull String account, @NonNull RepositoryListOptions options, int pageSize, @Nullable RepositoryPage shownFirstPage, @NonNull CancellationToken cancellationToken) {
+    return new Task(Task.Priority.BACKGROUND, Task.Pool.IO, cancellationToken) {
+      @Override
+      public void run() {
+        try {
+          RefreshedRepositories revalidated = gitHubRepository.revalidateUserRepositories(account, options);
+          if (revalidated == null || isCancelled()) {
+            return;
+          }
+          if (shownFirstPage == null) {
+            taskQueue.enqueue(buildMappingTask(account, revalidated.getRepositories(), Task.Priority.BACKGROUND, getCancellationToken(), revalidated.isStale()));
+            return;
+          }
+          RepositoryPage page = gitHubRepository.getUserRepositoriesPage(account, null, pageSize);
+          if (isCancelled()) {
+            return;
+          }
+          if (!revalidated.isStale() && sameRepositories(shownFirstPage.getRepositories(), page.getRepositories())) {
+            // the changes are further down the list, where the pages still to be loaded pick them up
+            return;
+          }
+          Param firstPage = Param.firstPage(account, pageSize);
+          taskQueue.enqueue(buildMappingTask(account, page.getRepositories(), Task.Priority.BACKGROUND, getCancellationToken(), revalidated.isStale(), firstPage.nextPage(page.getNext()), false, true));
+        } catch (Exception e) {
+          if (!isCancelled()) {
+            Timber.w(e, "failed to revalidate repositories of %s", account);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * @return true if both lists hold the same repositories in the same order and none of them has been updated
+   */
+  private static boolean sameRepositories(@NonNull List<RepositoryEntity> left, @NonNull List<RepositoryEntity> right) {
+    if (left.size() != right.size()) {
+      return false;
+    }
+    for (int i = 0; i < left.size(); i++) {
+      RepositoryEntity l = left.get(i);
+      RepositoryEntity r = right.get(i);
+      if (l.getId() != r.getId()) {
+        return false;
+      }
+      if (l.getUpdatedAt() == null ? r.getUpdatedAt() != null : !l.getUpdatedAt().equals(r.getUpdatedAt())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Maps loaded entities on the compute pool and posts them unless the loading task has been cancelled meanwhile
+   *
+   * @param stale true if the entities are cached ones served while the circuit to the API is open
+   */
+  @NonNull
+  Task buildMappingTask(@NonNull String account, @NonNull List<RepositoryEntity> entities, @NonNull Task.Priority priority, @NonNull CancellationToken cancellationToken, boolean stale) {
+    return buildMappingTask(account, entities, priority, cancellationToken, stale, null, false, false);
+  }
+
+  /**
+   * @param next            param of the following page, or null if there is none
+   * @param appended        true if the entities continue the previously posted ones
+   * @param firstPageUpdate true if the entities are a revalidated first page to merge into the posted ones
+   */
+  @NonNull
+  Task buildMappingTask(@NonNull String account, @NonNull List<RepositoryEntity> entities, @NonNull Task.Priority priority, @NonNull CancellationToken cancellationToken, boolean stale, @Nullable Param next, boolean appended, boolean firstPageUpdate) {
+    return new Task(priority, Task.Pool.COMPUTE, cancellationToken) {
+      @Override
+      public void run() {
+        try {
+          List<Repository> repositories = repositoryMapper.convertList(entities);
+          if (isCancelled()) {
+            return;
+          }
+          bus.post(new OnSuccessGetRepositories(account, repositories, stale, next, appended, firstPageUpdate));
+        } catch (Exception e) {
+          if (!isCancelled()) {
+            bus.post(new OnFailureGetRepositories(e));
+          }
         }
       }
     };
@@ -87,24 +265,113 @@ public class GetRepositories extends UseCase<GetRepositories.Param> {
    * Param
    */
   public static class Param {
+    /**
+     * page size of a load posting all repositories at once
+     */
+    static final int UNPAGED = 0;
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
     @NonNull
     private final String account;
 
     private final boolean refresh;
 
-    private Param(@NonNull String account, boolean refresh) {
+    private final boolean incremental;
+
+    @NonNull
+    private final RepositoryListOptions options;
+
+    @Nullable
+    private final RepositoryPage.Cursor after;
+
+    private final int pageSize;
+
+    private Param(@NonNull String account, boolean refresh, @NonNull RepositoryListOptions options) {
+      this(account, refresh, false, options, null, UNPAGED);
+    }
+
+    private Param(@NonNull String account, boolean refresh, boolean incremental, @NonNull RepositoryListOptions options, @Nullable RepositoryPage.Cursor after, int pageSize) {
       this.account = account;
       this.refresh = refresh;
+      this.incremental = incremental;
+      this.options = options;
+      this.after = after;
+      this.pageSize = pageSize;
+    }
+
+    /**
+     * Loads cached repositories newest first, one page at a time
+     */
+    @NonNull
+    public static Param firstPage(@NonNull String account, int pageSize) {
+      if (pageSize <= 0) {
+        throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+      }
+      return new Param(account, false, false, RepositoryListOptions.DEFAULT, null, pageSize);
+    }
+
+    boolean isPaged() {
+      return pageSize != UNPAGED;
+    }
+
+    @Nullable
+    Param nextPage(@Nullable RepositoryPage.Cursor next) {
+      return next == null ? null : new Param(account, false, false, options, next, pageSize);
+    }
+
+    /**
+     * @param options page size and the order GitHub sorts repositories in, both sent with the request;
+     *                lists other than {@link RepositoryListOptions#DEFAULT} are always fetched in full
+     */
+    @NonNull
+    public static Param newInstance(@NonNull String account, boolean refresh, @NonNull RepositoryListOptions options) {
+      return new Param(account, refresh, options);
+    }
+
+    /**
+     * Refreshes only the repositories updated after the newest cached one.
+     * Deletions and the last synced time are left to the next full refresh.
+     */
+    @NonNull
+    public static Param incrementalRefresh(@NonNull String account, @NonNull RepositoryListOptions options) {
+      return new Param(account, true, true, options, null, UNPAGED);
     }
 
     @NonNull
     public static Param newInstance(@NonNull String account, boolean refresh) {
-      return new Param(account, refresh);
+      return new Param(account, refresh, RepositoryListOptions.DEFAULT);
     }
 
     @NonNull
     public static Param newInstance(@NonNull String account) {
-      return new Param(account, false);
+      return new Param(account, false, RepositoryListOptions.DEFAULT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Param param = (Param) o;
+
+      if (refresh != param.refresh) return false;
+      if (incremental != param.incremental) return false;
+      if (pageSize != param.pageSize) return false;
+      if (!account.equals(param.account)) return false;
+      if (!options.equals(param.options)) return false;
+      return after != null ? after.equals(param.after) : param.after == null;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = account.hashCode();
+      result = 31 * result + (refresh ? 1 : 0);
+      result = 31 * result + (incremental ? 1 : 0);
+      result = 31 * result + options.hashCode();
+      result = 31 * result + (after != null ? after.hashCode() : 0);
+      result = 31 * result + pageSize;
+      return result;
     }
   }
 
@@ -112,8 +379,82 @@ public class GetRepositories extends UseCase<GetRepositories.Param> {
    * Success Event
    */
   public static class OnSuccessGetRepositories extends SuccessEvent<List<Repository>> {
+    @Nullable
+    private final String account;
+
+    private final boolean stale;
+
+    @Nullable
+    private final Param next;
+
+    private final boolean appended;
+
+    private final boolean firstPageUpdate;
+
     public OnSuccessGetRepositories(@NonNull List<Repository> item) {
+      this(item, false);
+    }
+
+    public OnSuccessGetRepositories(@NonNull List<Repository> item, boolean stale) {
+      this(item, stale, null, false);
+    }
+
+    public OnSuccessGetRepositories(@NonNull List<Repository> item, boolean stale, @Nullable Param next, boolean appended) {
+      this(null, item, stale, next, appended);
+    }
+
+    /**
+     * @param account account whose repositories these are
+     */
+    public OnSuccessGetRepositories(@Nullable String account, @NonNull List<Repository> item, boolean stale, @Nullable Param next, boolean appended) {
+      this(account, item, stale, next, appended, false);
+    }
+
+    public OnSuccessGetRepositories(@Nullable String account, @NonNull List<Repository> item, boolean stale, @Nullable Param next, boolean appended, boolean firstPageUpdate) {
       super(item);
+      this.account = account;
+      this.stale = stale;
+      this.next = next;
+      this.appended = appended;
+      this.firstPageUpdate = firstPageUpdate;
+    }
+
+    /**
+     * @return account whose repositories these are, or null if not known
+     */
+    @Nullable
+    public String getAccount() {
+      return account;
+    }
+
+    /**
+     * @return true if the API could not be reached and these are cached repositories
+     */
+    public boolean isStale() {
+      return stale;
+    }
+
+    /**
+     * @return param to load the following page, or null if every repository has been posted
+     */
+    @Nullable
+    public Param getNext() {
+      return next;
+    }
+
+    /**
+     * @return true if these repositories continue the previously posted page instead of replacing it
+     */
+    public boolean isAppended() {
+      return appended;
+    }
+
+    /**
+     * @return true if these repositories are a revalidated first page, which replaces the top of the shown list
+     * and keeps the pages loaded below it
+     */
+    public boolean isFirstPageUpdate() {
+      return firstPageUpdate;
     }
   }
 
@@ -0,0 +1,150 @@
+package us.shiroyama.android.my_repositories.domain.usecase;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.squareup.otto.Bus;
+
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.common.BusProvider;
+import us.shiroyama.android.my_repositories.domain.event.FailureEvent;
+import us.shiroyama.android.my_repositories.domain.event.SuccessEvent;
+import us.shiroyama.android.my_repositories.domain.mapper.RepositoryMapper;
+import us.shiroyama.android.my_repositories.domain.model.Repository;
+import us.shiroyama.android.my_repositories.domain.usecase.executor.Task;
+import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskQueue;
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.GitHubInfraRepository;
+import us.shiroyama.android.my_repositories.infrastructure.repository.GitHubRepository;
+
+/**
+ * UseCase to search cached {@link Repository}s of every account by name and description
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class SearchRepositories extends UseCase<SearchRepositories.Param> {
+  @NonNull
+  private final GitHubRepository gitHubRepository;
+
+  @NonNull
+  private final RepositoryMapper repositoryMapper;
+
+  public SearchRepositories(@NonNull TaskQueue taskQueue, @NonNull Bus bus, @NonNull GitHubRepository gitHubRepository, @NonNull RepositoryMapper repositoryMapper) {
+    super(taskQueue, bus);
+    this.gitHubRepository = gitHubRepository;
+    this.repositoryMapper = repositoryMapper;
+  }
+
+  /**
+   * Searching only reads the local index and the result is small, so mapping stays on the same task.
+   * A cancelled task, e.g. one superseded by the next keystroke, never posts to {@link Bus}.
+   */
+  @Override
+  protected Task buildTask(Param param) {
+    return new Task(Task.Priority.INTERACTIVE, Task.Pool.IO) {
+      @Override
+      public void run() {
+        try {
+          List<RepositoryEntity> entities = gitHubRepository.searchRepositories(param.query, param.limit);
+          if (isCancelled()) {
+            return;
+          }
+          List<Repository> repositories = repositoryMapper.convertList(entities);
+          if (isCancelled()) {
+            return;
+          }
+          bus.post(new OnSuccessSearchRepositories(param.query, repositories));
+        } catch (Exception e) {
+          if (!isCancelled()) {
+            bus.post(new OnFailureSearchRepositories(e));
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Singleton Factory
+   */
+  public static class Factory {
+    private static SearchRepositories instance;
+
+    @NonNull
+    public static synchronized SearchRepositories get(@NonNull Context context) {
+      if (instance == null) {
+        instance = new SearchRepositories(
+            TaskQueue.Factory.INSTANCE.get(),
+            BusProvider.INSTANCE.get(),
+            GitHubInfraRepository.Factory.get(context),
+            RepositoryMapper.Factory.INSTANCE.get()
+        );
+      }
+      return instance;
+    }
+  }
+
+  /**
+   * Param
+   */
+  public static class Param {
+    public static final int DEFAULT_LIMIT = 50;
+
+    @NonNull
+    private final String query;
+
+    private final int limit;
+
+    private Param(@NonNull String query, int limit) {
+      this.query = query;
+      this.limit = limit;
+    }
+
+    /**
+     * @param limit maximum number of repositories, best matches first
+     */
+    @NonNull
+    public static Param newInstance(@NonNull String query, int limit) {
+      if (limit <= 0) {
+        throw new IllegalArgumentException("limit must be positive: " + limit);
+      }
+      return new Param(query, limit);
+    }
+
+    @NonNull
+    public static Param newInstance(@NonNull String query) {
+      return new Param(query, DEFAULT_LIMIT);
+    }
+  }
+
+  /**
+   * Success Event
+   */
+  public static class OnSuccessSearchRepositories extends SuccessEvent<List<Repository>> {
+    @NonNull
+    private final String query;
+
+    public OnSuccessSearchRepositories(@NonNull String query, @NonNull List<Repository> item) {
+      super(item);
+      this.query = query;
+    }
+
+    /**
+     * @return query the repositories were found by, to drop results of outdated queries
+     */
+    @NonNull
+    public String getQuery() {
+      return query;
+    }
+  }
+
+  /**
+   * Failure Event
+   */
+  public static class OnFailureSearchRepositories extends FailureEvent<Exception> {
+    public OnFailureSearchRepositories(@NonNull Exception item) {
+      super(item);
+    }
+  }
+}
@@ -1,11 +1,13 @@
 package us.shiroyama.android.my_repositories.domain.usecase;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.squareup.otto.Bus;
 
 import java.util.concurrent.Future;
 
+import us.shiroyama.android.my_repositories.domain.usecase.executor.InFlightRegistry;
 import us.shiroyama.android.my_repositories.domain.usecase.executor.Task;
 import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskQueue;
 import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskTicket;
@@ -18,22 +20,46 @@ import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskTicket;
 
 public abstract class UseCase<PARAM> {
   @NonNull
-  private final TaskQueue taskQueue;
+  protected final TaskQueue taskQueue;
 
   @NonNull
   protected final Bus bus;
 
+  @NonNull
+  private final InFlightRegistry inFlightRegistry = new InFlightRegistry();
+
   protected UseCase(@NonNull TaskQueue taskQueue, @NonNull Bus bus) {
     this.taskQueue = taskQueue;
     this.bus = bus;
   }
 
+  /**
+   * Requests with an equal {@link #getInFlightKey(Object)} share one running task while it is in flight.
+   * Cancelling the ticket also cancels the {@link Task} cooperatively.
+   */
   @NonNull
   public TaskTicket enqueue(PARAM param) {
     Task task = buildTask(param);
+    Object key = getInFlightKey(param);
+    if (key != null) {
+      return inFlightRegistry.enqueue(key, taskQueue, task);
+    }
     Future<?> future = taskQueue.enqueue(task);
-    return new TaskTicket(task.getId(), future);
+    return new TaskTicket(task.getId(), future, interrupt -> {
+      task.cancel();
+      future.cancel(interrupt);
+    });
   }
 
   protected abstract Task buildTask(PARAM param);
+
+  /**
+   * Override to coalesce concurrent requests. The key must implement <code>equals()</code> and <code>hashCode()</code>.
+   *
+   * @return key of interchangeable requests, or null to always run a new task
+   */
+  @Nullable
+  protected Object getInFlightKey(PARAM param) {
+    return null;
+  }
 }
@@ -0,0 +1,101 @@
+package us.shiroyama.android.my_repositories.domain.usecase.executor;
+
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single-flight registry which lets duplicate requests attach to the {@link Task} already running for the same key
+ * <p>
+ * The shared task is only cancelled after every {@link TaskTicket} handed out for it has been cancelled.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class InFlightRegistry {
+  @NonNull
+  private final Map<Object, Flight> flights = new HashMap<>();
+
+  /**
+   * Enqueues the task unless another one with an equal key is still in flight
+   *
+   * @param key  identifies requests whose results are interchangeable, e.g. the use case param
+   * @param task task to run when nothing is in flight for the key; dropped otherwise
+   * @return a ticket which releases only this caller's share of the task on cancel
+   */
+  @NonNull
+  public synchronized TaskTicket enqueue(@NonNull Object key, @NonNull TaskQueue taskQueue, @NonNull Task task) {
+    Flight flight = flights.get(key);
+    if (flight == null) {
+      flight = new Flight(task);
+      flights.put(key, flight);
+      Flight started = flight;
+      try {
+        flight.future = taskQueue.enqueue(new Task(task.getPriority(), task.getPool(), task.getCancellationToken()) {
+          @Override
+          public void run() {
+            try {
+              task.run();
+            } finally {
+              remove(key, started);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        flights.remove(key);
+        throw e;
+      }
+    } else {
+      flight.callers++;
+    }
+    return newTicket(key, flight);
+  }
+
+  /**
+   * @return number of keys currently in flight
+   */
+  public synchronized int size() {
+    return flights.size();
+  }
+
+  @NonNull
+  private TaskTicket newTicket(@NonNull Object key, @NonNull Flight flight) {
+    AtomicBoolean released = new AtomicBoolean();
+    return new TaskTicket(flight.task.getId(), flight.future, interrupt -> {
+      if (released.compareAndSet(false, true)) {
+        release(key, flight, interrupt);
+      }
+    });
+  }
+
+  private synchronized void release(@NonNull Object key, @NonNull Flight flight, boolean interrupt) {
+    if (--flight.callers > 0) {
+      return;
+    }
+    remove(key, flight);
+    flight.task.cancel();
+    flight.future.cancel(interrupt);
+  }
+
+  private synchronized void remove(@NonNull Object key, @NonNull Flight flight) {
+    if (flights.get(key) == flight) {
+      flights.remove(key);
+    }
+  }
+
+  private static class Flight {
+    @NonNull
+    private final Task task;
+
+    private Future<?> future;
+
+    private int callers = 1;
+
+    private Flight(@NonNull Task task) {
+      this.task = task;
+    }
+  }
+}
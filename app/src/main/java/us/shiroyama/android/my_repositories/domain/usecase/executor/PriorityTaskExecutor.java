@@ -0,0 +1,144 @@
+package us.shiroyama.android.my_repositories.domain.usecase.executor;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor which runs queued {@link Task}s by {@link Task.Priority} instead of FIFO
+ * <p>
+ * Tasks are ordered by a virtual deadline, the enqueue time plus {@link Task.Priority#getDelayNanos()},
+ * and tasks with the same deadline keep their enqueue order.
+ * Runnables other than {@link Task} are treated as {@link Task.Priority#INTERACTIVE}.
+ * <p>
+ * Only {@link Task.Priority#INTERACTIVE} work starts threads beyond the core size, up to the maximum,
+ * so the user never waits behind lower lanes holding every core thread on slow calls.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class PriorityTaskExecutor extends ThreadPoolExecutor {
+  @NonNull
+  private final AtomicLong sequence = new AtomicLong();
+
+  public PriorityTaskExecutor(int threads) {
+    super(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+  }
+
+  /**
+   * Threads are started on demand and stopped after being idle for <code>keepAliveSeconds</code>
+   *
+   * @param coreThreads threads shared by all lanes
+   * @param maxThreads  bound of the threads started for {@link Task.Priority#INTERACTIVE} work once the core ones are busy
+   */
+  public PriorityTaskExecutor(int coreThreads, int maxThreads, long keepAliveSeconds) {
+    this(coreThreads, maxThreads, keepAliveSeconds, new ElasticQueue());
+  }
+
+  private PriorityTaskExecutor(int coreThreads, int maxThreads, long keepAliveSeconds, @NonNull ElasticQueue queue) {
+    super(coreThreads, maxThreads, keepAliveSeconds, TimeUnit.SECONDS, queue, (runnable, executor) -> {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("executor has been shut down");
+      }
+      // every thread is taken, so wait in the queue like the other lanes
+      queue.force(runnable);
+    });
+    queue.executor = this;
+    allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void execute(@NonNull Runnable command) {
+    if (command instanceof PriorityFuture) {
+      super.execute(command);
+    } else {
+      super.execute(newTaskFor(command, null));
+    }
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+    Task.Priority priority = runnable instanceof Task
+        ? ((Task) runnable).getPriority()
+        : Task.Priority.INTERACTIVE;
+    return new PriorityFuture<>(runnable, value, priority, deadline(priority), sequence.getAndIncrement());
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+    Task.Priority priority = Task.Priority.INTERACTIVE;
+    return new PriorityFuture<>(callable, priority, deadline(priority), sequence.getAndIncrement());
+  }
+
+  long nanoTime() {
+    return System.nanoTime();
+  }
+
+  private long deadline(@NonNull Task.Priority priority) {
+    return nanoTime() + priority.getDelayNanos();
+  }
+
+  /**
+   * Refuses {@link Task.Priority#INTERACTIVE} work while no thread is idle and the pool may still grow,
+   * which makes {@link ThreadPoolExecutor} start a new thread for it instead of queueing it
+   */
+  private static class ElasticQueue extends PriorityBlockingQueue<Runnable> {
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public boolean offer(Runnable runnable) {
+      if (executor != null
+          && runnable instanceof PriorityFuture
+          && ((PriorityFuture<?>) runnable).priority == Task.Priority.INTERACTIVE
+          && executor.getPoolSize() < executor.getMaximumPoolSize()
+          && executor.getActiveCount() >= executor.getPoolSize()) {
+        return false;
+      }
+      return super.offer(runnable);
+    }
+
+    private void force(@NonNull Runnable runnable) {
+      super.offer(runnable);
+    }
+  }
+
+  private static class PriorityFuture<T> extends FutureTask<T> implements Comparable<PriorityFuture<?>> {
+    @NonNull
+    private final Task.Priority priority;
+
+    private final long deadline;
+
+    private final long sequence;
+
+    private PriorityFuture(@NonNull Runnable runnable, T value, @NonNull Task.Priority priority, long deadline, long sequence) {
+      super(runnable, value);
+      this.priority = priority;
+      this.deadline = deadline;
+      this.sequence = sequence;
+    }
+
+    private PriorityFuture(@NonNull Callable<T> callable, @NonNull Task.Priority priority, long deadline, long sequence) {
+      super(callable);
+      this.priority = priority;
+      this.deadline = deadline;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(@NonNull PriorityFuture<?> other) {
+      // nanoTime may overflow, so compare the difference
+      long diff = deadline - other.deadline;
+      if (diff != 0) {
+        return diff < 0 ? -1 : 1;
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
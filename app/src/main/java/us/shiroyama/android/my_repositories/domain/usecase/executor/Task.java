@@ -3,6 +3,9 @@ package us.shiroyama.android.my_repositories.domain.usecase.executor;
 import android.support.annotation.NonNull;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import us.shiroyama.android.my_repositories.common.CancellationToken;
 
 /**
  * Each Task in {@link TaskQueue}
@@ -14,12 +17,111 @@ public abstract class Task implements Runnable {
   @NonNull
   private final String id;
 
+  @NonNull
+  private final Priority priority;
+
+  @NonNull
+  private final Pool pool;
+
+  @NonNull
+  private final CancellationToken cancellationToken;
+
   public Task() {
+    this(Priority.INTERACTIVE);
+  }
+
+  public Task(@NonNull Priority priority) {
+    this(priority, Pool.IO);
+  }
+
+  public Task(@NonNull Priority priority, @NonNull Pool pool) {
+    this(priority, pool, new CancellationToken());
+  }
+
+  /**
+   * @param cancellationToken shared with the task this one continues, so that cancelling either stops both
+   */
+  public Task(@NonNull Priority priority, @NonNull Pool pool, @NonNull CancellationToken cancellationToken) {
     this.id = UUID.randomUUID().toString();
+    this.priority = priority;
+    this.pool = pool;
+    this.cancellationToken = cancellationToken;
   }
 
   @NonNull
   public String getId() {
     return id;
   }
+
+  @NonNull
+  public Priority getPriority() {
+    return priority;
+  }
+
+  @NonNull
+  public Pool getPool() {
+    return pool;
+  }
+
+  @NonNull
+  public CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  /**
+   * Cancels cooperatively: ongoing calls registered to the token are aborted and
+   * the task is expected to check {@link #isCancelled()} between its stages
+   */
+  public void cancel() {
+    cancellationToken.cancel();
+  }
+
+  public boolean isCancelled() {
+    return cancellationToken.isCancelled();
+  }
+
+  /**
+   * Thread pool of {@link TaskQueue} a {@link Task} runs on
+   */
+  public enum Pool {
+    /**
+     * blocking network or disk access
+     */
+    IO,
+    /**
+     * CPU bound work such as mapping or diffing, never blocks on I/O
+     */
+    COMPUTE
+  }
+
+  /**
+   * Lane of a {@link Task} in {@link PriorityTaskExecutor}
+   * <p>
+   * A task runs as if it had been enqueued later by its delay, so a lower lane yields to
+   * newer work of higher lanes only until it has waited that long, and can never starve.
+   */
+  public enum Priority {
+    /**
+     * work the user is waiting for, e.g. the initial load of a screen
+     */
+    INTERACTIVE(0L),
+    /**
+     * user initiated refresh of data already on the screen
+     */
+    REFRESH(TimeUnit.SECONDS.toNanos(1)),
+    /**
+     * speculative or periodic work, e.g. revalidation of stale caches
+     */
+    BACKGROUND(TimeUnit.SECONDS.toNanos(10));
+
+    private final long delayNanos;
+
+    Priority(long delayNanos) {
+      this.delayNanos = delayNanos;
+    }
+
+    public long getDelayNanos() {
+      return delayNanos;
+    }
+  }
 }
@@ -5,35 +5,134 @@ import android.support.annotation.NonNull;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import us.shiroyama.android.my_repositories.common.CancellationToken;
+import us.shiroyama.android.my_repositories.common.RateLimitBudget;
 import us.shiroyama.android.my_repositories.common.Singleton;
 
 /**
  * Task Queue for Asynchronous Tasks
+ * <p>
+ * Blocking I/O and CPU bound work run on separate pools, so slow requests cannot hold the threads needed for mapping.
+ * <p>
+ * {@link Task.Priority#BACKGROUND} I/O tasks are postponed until the rate limit resets
+ * while {@link RateLimitBudget} runs low, leaving the rest of the budget to the work the user is waiting for.
+ * Other tasks always run and fail fast with <code>RateLimitException</code> carrying the reset time.
  *
  * @author Fumihiko Shiroyama
  */
 
 public class TaskQueue {
+  /**
+   * {@link Task.Priority#BACKGROUND} work is postponed below this fraction of the limit
+   */
+  static final float LOW_BUDGET_FRACTION = 0.2f;
+
+  @NonNull
+  private final ExecutorService ioExecutor;
+
+  @NonNull
+  private final ExecutorService computeExecutor;
+
+  @NonNull
+  private final RateLimitBudget rateLimitBudget;
+
   @NonNull
-  private final ExecutorService executorService;
+  private final ScheduledExecutorService scheduler;
 
   public TaskQueue(@NonNull ExecutorService executorService) {
-    this.executorService = executorService;
+    this(executorService, executorService);
+  }
+
+  /**
+   * Postpones against the {@link RateLimitBudget} updated by the HTTP client, on the scheduler shared by every queue
+   */
+  public TaskQueue(@NonNull ExecutorService ioExecutor, @NonNull ExecutorService computeExecutor) {
+    this(ioExecutor, computeExecutor, RateLimitBudget.Factory.INSTANCE.get(), Scheduler.INSTANCE.get());
+  }
+
+  /**
+   * @param scheduler resubmits postponed tasks once the rate limit resets
+   */
+  public TaskQueue(@NonNull ExecutorService ioExecutor, @NonNull ExecutorService computeExecutor, @NonNull RateLimitBudget rateLimitBudget, @NonNull ScheduledExecutorService scheduler) {
+    this.ioExecutor = ioExecutor;
+    this.computeExecutor = computeExecutor;
+    this.rateLimitBudget = rateLimitBudget;
+    this.scheduler = scheduler;
   }
 
+  /**
+   * Runs the task on the pool of its {@link Task.Pool},
+   * in order of its {@link Task.Priority} when backed by {@link PriorityTaskExecutor}.
+   * Its {@link CancellationToken} is bound to the worker thread while it runs.
+   * <p>
+   * The budget is checked when the task is about to run. A postponed task completes the returned {@link Future}
+   * and is submitted again later without running, so it stays in flight and is cancelled through {@link Task#cancel()}.
+   */
   public Future<?> enqueue(@NonNull Task task) {
-    return executorService.submit(task);
+    return submit(bind(task));
+  }
+
+  @NonNull
+  private Future<?> submit(@NonNull Task bound) {
+    return bound.getPool() == Task.Pool.COMPUTE
+        ? computeExecutor.submit(bound)
+        : ioExecutor.submit(bound);
+  }
+
+  private boolean shouldPostpone(@NonNull Task task) {
+    return task.getPool() == Task.Pool.IO
+        && task.getPriority() == Task.Priority.BACKGROUND
+        && rateLimitBudget.isLow(LOW_BUDGET_FRACTION);
+  }
+
+  @NonNull
+  private Task bind(@NonNull Task task) {
+    return new Task(task.getPriority(), task.getPool(), task.getCancellationToken()) {
+      @Override
+      public void run() {
+        if (task.isCancelled()) {
+          return;
+        }
+        if (shouldPostpone(task)) {
+          Task postponed = this;
+          scheduler.schedule(() -> submit(postponed), rateLimitBudget.millisUntilReset(), TimeUnit.MILLISECONDS);
+          return;
+        }
+        CancellationToken previous = CancellationToken.bind(task.getCancellationToken());
+        try {
+          task.run();
+        } finally {
+          CancellationToken.bind(previous);
+        }
+      }
+    };
   }
 
   public enum Factory implements Singleton<TaskQueue> {
     INSTANCE;
 
+    private static final long IO_KEEP_ALIVE_SECONDS = 30L;
+
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * I/O threads mostly wait, so size them by the expected concurrent requests rather than by cores.
+     * Threads above the core size are only started for {@link Task.Priority#INTERACTIVE} work.
+     */
+    @NonNull
+    private final ExecutorService ioExecutor = new PriorityTaskExecutor(Math.max(4, cores), Math.max(8, cores * 2), IO_KEEP_ALIVE_SECONDS);
+
+    /**
+     * leaves one core to the main thread, but never ends up with an empty pool on single core devices
+     */
     @NonNull
-    private final ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() - 1);
+    private final ExecutorService computeExecutor = new PriorityTaskExecutor(Math.max(1, cores - 1));
 
     @NonNull
-    private final TaskQueue taskQueue = new TaskQueue(executorService);
+    private final TaskQueue taskQueue = new TaskQueue(ioExecutor, computeExecutor);
 
     @NonNull
     @Override
@@ -41,4 +140,24 @@ public class TaskQueue {
       return taskQueue;
     }
   }
+
+  /**
+   * Single scheduler thread shared by every {@link TaskQueue}, which only holds postponed tasks until the reset time
+   */
+  private enum Scheduler implements Singleton<ScheduledExecutorService> {
+    INSTANCE;
+
+    @NonNull
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "TaskQueue-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    @NonNull
+    @Override
+    public ScheduledExecutorService get() {
+      return scheduler;
+    }
+  }
 }
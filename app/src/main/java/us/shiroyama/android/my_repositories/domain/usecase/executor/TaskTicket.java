@@ -17,9 +17,20 @@ public class TaskTicket implements Cancellable {
   @NonNull
   private final Future<?> future;
 
+  @NonNull
+  private final Cancellable canceller;
+
   public TaskTicket(@NonNull String taskId, @NonNull Future<?> future) {
+    this(taskId, future, future::cancel);
+  }
+
+  /**
+   * @param canceller decides what cancelling this ticket does, e.g. releasing a shared task
+   */
+  public TaskTicket(@NonNull String taskId, @NonNull Future<?> future, @NonNull Cancellable canceller) {
     this.taskId = taskId;
     this.future = future;
+    this.canceller = canceller;
   }
 
   @NonNull
@@ -32,11 +43,12 @@ public class TaskTicket implements Cancellable {
     return future;
   }
 
+  /**
+   * Always reaches the canceller, since a completed {@link #getFuture()} may only mean that the first stage has finished
+   * while following stages sharing its token, or a postponed resubmission, are still to run
+   */
   @Override
   public void cancel(boolean interrupt) {
-    if (future.isDone() || future.isCancelled()) {
-      return;
-    }
-    future.cancel(interrupt);
+    canceller.cancel(interrupt);
   }
 }
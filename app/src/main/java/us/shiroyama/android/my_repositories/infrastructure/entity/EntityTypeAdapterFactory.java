@@ -0,0 +1,28 @@
+package us.shiroyama.android.my_repositories.infrastructure.entity;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import org.threeten.bp.ZonedDateTime;
+
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+
+/**
+ * {@link TypeAdapterFactory} providing the streaming adapter of {@link RepositoryRows}, the only shape repository lists are decoded into
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class EntityTypeAdapterFactory implements TypeAdapterFactory {
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    Class<? super T> rawType = type.getRawType();
+    if (rawType == RepositoryRows.class) {
+      return (TypeAdapter<T>) new RepositoryRowsTypeAdapter(gson.getAdapter(ZonedDateTime.class));
+    }
+    return null;
+  }
+}
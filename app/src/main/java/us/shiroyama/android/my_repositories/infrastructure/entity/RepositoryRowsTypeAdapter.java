@@ -0,0 +1,197 @@
+package us.shiroyama.android.my_repositories.infrastructure.entity;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.threeten.bp.ZonedDateTime;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+
+/**
+ * Streaming {@link TypeAdapter} decoding a GitHub repository array straight into {@link RepositoryRows}
+ * <p>
+ * Rows are built while reading, so no {@link RepositoryEntity} graph is materialized on the way to the database.
+ * An owner already seen in the same array is not allocated again.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryRowsTypeAdapter extends TypeAdapter<RepositoryRows> {
+  @NonNull
+  private final TypeAdapter<ZonedDateTime> dateAdapter;
+
+  public RepositoryRowsTypeAdapter(@NonNull TypeAdapter<ZonedDateTime> dateAdapter) {
+    this.dateAdapter = dateAdapter;
+  }
+
+  @Override
+  public void write(JsonWriter out, RepositoryRows value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    Map<Long, RoomAccountEntity> accounts = new HashMap<>();
+    for (RoomAccountEntity account : value.getAccounts()) {
+      accounts.put(account.getId(), account);
+    }
+    out.beginArray();
+    for (RoomRepositoryEntity repository : value.getRepositories()) {
+      out.beginObject();
+      out.name("id").value(repository.getId());
+      out.name("name").value(repository.getName());
+      out.name("full_name").value(repository.getFullName());
+      out.name("html_url").value(repository.getHtmlUrl());
+      out.name("private").value(repository.isPrivate());
+      out.name("description").value(repository.getDescription());
+      out.name("owner");
+      writeOwner(out, accounts.get(repository.getAccountId()));
+      out.name("created_at");
+      dateAdapter.write(out, repository.getCreatedAt());
+      out.name("updated_at");
+      dateAdapter.write(out, repository.getUpdatedAt());
+      out.name("pushed_at");
+      dateAdapter.write(out, repository.getPushedAt());
+      out.endObject();
+    }
+    out.endArray();
+  }
+
+  @Override
+  public RepositoryRows read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    List<RoomRepositoryEntity> repositories = new ArrayList<>();
+    Map<Long, RoomAccountEntity> accounts = new LinkedHashMap<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      repositories.add(readRepository(in, accounts));
+    }
+    in.endArray();
+    return new RepositoryRows(repositories, new ArrayList<>(accounts.values()));
+  }
+
+  @NonNull
+  private RoomRepositoryEntity readRepository(@NonNull JsonReader in, @NonNull Map<Long, RoomAccountEntity> accounts) throws IOException {
+    long id = 0L;
+    String name = null;
+    String fullName = null;
+    String htmlUrl = null;
+    boolean isPrivate = false;
+    String description = null;
+    long accountId = 0L;
+    ZonedDateTime createdAt = null;
+    ZonedDateTime updatedAt = null;
+    ZonedDateTime pushedAt = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "id":
+          id = in.nextLong();
+          break;
+        case "name":
+          name = nextStringOrNull(in);
+          break;
+        case "full_name":
+          fullName = nextStringOrNull(in);
+          break;
+        case "html_url":
+          htmlUrl = nextStringOrNull(in);
+          break;
+        case "private":
+          isPrivate = in.nextBoolean();
+          break;
+        case "description":
+          description = nextStringOrNull(in);
+          break;
+        case "owner":
+          accountId = readOwner(in, accounts);
+          break;
+        case "created_at":
+          createdAt = dateAdapter.read(in);
+          break;
+        case "updated_at":
+          updatedAt = dateAdapter.read(in);
+          break;
+        case "pushed_at":
+          pushedAt = dateAdapter.read(in);
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+    return new RoomRepositoryEntity(id, name, fullName, htmlUrl, isPrivate, description, accountId, createdAt, updatedAt, pushedAt);
+  }
+
+  /**
+   * @return id of the owner, which is added to <code>accounts</code> unless already there
+   */
+  private long readOwner(@NonNull JsonReader in, @NonNull Map<Long, RoomAccountEntity> accounts) throws IOException {
+    long id = 0L;
+    String login = null;
+    String avatarUrl = null;
+    String url = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "id":
+          id = in.nextLong();
+          break;
+        case "login":
+          login = nextStringOrNull(in);
+          break;
+        case "avatar_url":
+          avatarUrl = nextStringOrNull(in);
+          break;
+        case "url":
+          url = nextStringOrNull(in);
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+    if (!accounts.containsKey(id)) {
+      accounts.put(id, new RoomAccountEntity(id, login, avatarUrl, url));
+    }
+    return id;
+  }
+
+  private void writeOwner(@NonNull JsonWriter out, RoomAccountEntity account) throws IOException {
+    if (account == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("id").value(account.getId());
+    out.name("login").value(account.getLogin());
+    out.name("avatar_url").value(account.getAvatarUrl());
+    out.name("url").value(account.getUrl());
+    out.endObject();
+  }
+
+  private static String nextStringOrNull(@NonNull JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+}
@@ -12,9 +12,16 @@ import us.shiroyama.android.my_repositories.infrastructure.entity.GitHubErrorEnt
  */
 
 public class ApiException extends Exception {
+  /**
+   * {@link #getCode()} when not caused by an HTTP response
+   */
+  public static final int NO_CODE = 0;
+
   @Nullable
   private GitHubErrorEntity gitHubErrorEntity;
 
+  private final int code;
+
   public ApiException() {
     this(null, null, null);
   }
@@ -23,13 +30,32 @@ public class ApiException extends Exception {
     this(null, null, gitHubErrorEntity);
   }
 
+  /**
+   * @param code HTTP status code of the response
+   */
+  public ApiException(int code, @Nullable GitHubErrorEntity gitHubErrorEntity) {
+    this("HTTP " + code, null, gitHubErrorEntity, code);
+  }
+
   public ApiException(String message, Throwable cause, @Nullable GitHubErrorEntity gitHubErrorEntity) {
+    this(message, cause, gitHubErrorEntity, NO_CODE);
+  }
+
+  public ApiException(String message, Throwable cause, @Nullable GitHubErrorEntity gitHubErrorEntity, int code) {
     super(message, cause);
     this.gitHubErrorEntity = gitHubErrorEntity;
+    this.code = code;
   }
 
   @Nullable
   public GitHubErrorEntity getGitHubErrorEntity() {
     return gitHubErrorEntity;
   }
+
+  /**
+   * @return HTTP status code, or {@link #NO_CODE}
+   */
+  public int getCode() {
+    return code;
+  }
 }
@@ -0,0 +1,23 @@
+package us.shiroyama.android.my_repositories.infrastructure.exception;
+
+/**
+ * {@link ApiException} thrown without sending a request while the circuit to the API is open
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class CircuitOpenException extends ApiException {
+  private final long retryAtMillis;
+
+  public CircuitOpenException(long retryAtMillis) {
+    super("circuit open until " + retryAtMillis, null, null);
+    this.retryAtMillis = retryAtMillis;
+  }
+
+  /**
+   * @return epoch millis at which a trial request is let through
+   */
+  public long getRetryAtMillis() {
+    return retryAtMillis;
+  }
+}
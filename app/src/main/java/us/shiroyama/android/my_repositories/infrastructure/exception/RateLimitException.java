@@ -0,0 +1,35 @@
+package us.shiroyama.android.my_repositories.infrastructure.exception;
+
+import android.support.annotation.Nullable;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.GitHubErrorEntity;
+
+/**
+ * {@link ApiException} for an exhausted rate limit, either reported by the API or detected before sending a request
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RateLimitException extends ApiException {
+  private final long resetAtMillis;
+
+  public RateLimitException(long resetAtMillis) {
+    this(resetAtMillis, null);
+  }
+
+  public RateLimitException(long resetAtMillis, @Nullable GitHubErrorEntity gitHubErrorEntity) {
+    this(resetAtMillis, gitHubErrorEntity, NO_CODE);
+  }
+
+  public RateLimitException(long resetAtMillis, @Nullable GitHubErrorEntity gitHubErrorEntity, int code) {
+    super("rate limit exceeded until " + resetAtMillis, null, gitHubErrorEntity, code);
+    this.resetAtMillis = resetAtMillis;
+  }
+
+  /**
+   * @return epoch millis at which requests are accepted again, or 0 if unknown
+   */
+  public long getResetAtMillis() {
+    return resetAtMillis;
+  }
+}
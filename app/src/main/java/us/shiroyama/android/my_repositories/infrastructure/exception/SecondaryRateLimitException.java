@@ -0,0 +1,18 @@
+package us.shiroyama.android.my_repositories.infrastructure.exception;
+
+import android.support.annotation.Nullable;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.GitHubErrorEntity;
+
+/**
+ * {@link RateLimitException} for the secondary rate limit, which asks to wait for <code>Retry-After</code>
+ * instead of the reset of the primary budget
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class SecondaryRateLimitException extends RateLimitException {
+  public SecondaryRateLimitException(long resetAtMillis, @Nullable GitHubErrorEntity gitHubErrorEntity, int code) {
+    super(resetAtMillis, gitHubErrorEntity, code);
+  }
+}
@@ -0,0 +1,50 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository;
+
+import android.support.annotation.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long cached repositories of an account are served without revalidation
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class FreshnessPolicy {
+  public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final long defaultTtlMillis;
+
+  @NonNull
+  private final Map<String, Long> ttlMillisByAccount = new ConcurrentHashMap<>();
+
+  public FreshnessPolicy() {
+    this(DEFAULT_TTL_MILLIS);
+  }
+
+  public FreshnessPolicy(long defaultTtlMillis) {
+    this.defaultTtlMillis = defaultTtlMillis;
+  }
+
+  /**
+   * Overrides the TTL of a single account, e.g. a shorter one for the signed-in user
+   */
+  public void setTtl(@NonNull String account, long ttlMillis) {
+    ttlMillisByAccount.put(account, ttlMillis);
+  }
+
+  public long getTtl(@NonNull String account) {
+    Long ttlMillis = ttlMillisByAccount.get(account);
+    return ttlMillis == null ? defaultTtlMillis : ttlMillis;
+  }
+
+  public boolean isFresh(@NonNull String account, long lastSyncedAt) {
+    return now() - lastSyncedAt < getTtl(account);
+  }
+
+  public long now() {
+    return System.currentTimeMillis();
+  }
+}
@@ -2,28 +2,50 @@ package us.shiroyama.android.my_repositories.infrastructure.repository;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.ZonedDateTime;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import timber.log.Timber;
+import us.shiroyama.android.my_repositories.common.CancellationToken;
 import us.shiroyama.android.my_repositories.common.GsonProvider;
-import us.shiroyama.android.my_repositories.infrastructure.entity.AccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.CircuitOpenException;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.GitHubLocalDataSource;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.GitHubMemoryDataSource;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.GitHubRoomDataSource;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.RepositoryPage;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DatabaseProvider;
-import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
-import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.mapper.RepositoryEntityMapper;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.CircuitBreakingRemoteDataSource;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.GitHubRemoteDataSource;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.GitHubRestDataSource;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RemoteRepositories;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RepositoryListOptions;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RequestRetrier;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.service.GitHubService;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.service.RetrofitProvider;
 
 /**
  * Repository for GitHub
+ * <p>
+ * Remote results arrive as {@link RepositoryRows} and are stored as they are.
+ * {@link RepositoryEntity}s are only built for the caller.
+ * <p>
+ * Cached repositories are read newest first and only sorted again for another {@link RepositoryListOptions} order.
+ * Remote lists are requested with the caller's options and kept in the order GitHub sends them.
+ * Validators are stored per account for the {@link RepositoryListOptions#DEFAULT} request only,
+ * so other options are revalidated without them.
+ * <p>
+ * While the circuit to the API is open, refreshes serve cached repositories marked as stale instead of failing.
  *
  * @author Fumihiko Shiroyama
  */
@@ -35,70 +57,221 @@ public class GitHubInfraRepository implements GitHubRepository {
   @NonNull
   private final GitHubLocalDataSource localDataSource;
 
+  @NonNull
+  private final FreshnessPolicy freshnessPolicy;
+
+  @NonNull
+  private final RepositoryEntityMapper repositoryEntityMapper;
+
   public GitHubInfraRepository(@NonNull GitHubRemoteDataSource remoteDataSource, @NonNull GitHubLocalDataSource localDataSource) {
+    this(remoteDataSource, localDataSource, new FreshnessPolicy());
+  }
+
+  public GitHubInfraRepository(@NonNull GitHubRemoteDataSource remoteDataSource, @NonNull GitHubLocalDataSource localDataSource, @NonNull FreshnessPolicy freshnessPolicy) {
+    this(remoteDataSource, localDataSource, freshnessPolicy, RepositoryEntityMapper.Factory.INSTANCE.get());
+  }
+
+  public GitHubInfraRepository(@NonNull GitHubRemoteDataSource remoteDataSource, @NonNull GitHubLocalDataSource localDataSource, @NonNull FreshnessPolicy freshnessPolicy, @NonNull RepositoryEntityMapper repositoryEntityMapper) {
     this.remoteDataSource = remoteDataSource;
     this.localDataSource = localDataSource;
+    this.freshnessPolicy = freshnessPolicy;
+    this.repositoryEntityMapper = repositoryEntityMapper;
   }
 
+  /**
+   * Returns cached repositories regardless of their age and only blocks on the network on a cold cache,
+   * where the HTTP cache may still answer, e.g. when offline.
+   * Use {@link #isStale(String)} to decide whether to {@link #revalidateUserRepositories(String, RepositoryListOptions)} afterwards.
+   */
   @NonNull
   @Override
-  public List<RepositoryEntity> getUserRepositories(@NonNull String account) throws IOException, ApiException {
-    List<RepositoryEntity> localRepositories = localDataSource.getUserRepositories(account);
+  public List<RepositoryEntity> getUserRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    List<RepositoryEntity> localRepositories = getLocalRepositories(account, options);
     if (!localRepositories.isEmpty()) {
       return localRepositories;
     }
-    List<RepositoryEntity> remoteRepositories = remoteDataSource.getUserRepositories(account);
-    if (remoteRepositories.isEmpty()) {
-      return remoteRepositories;
+    RepositoryRows rows = fetchAndStoreRepositories(account, options);
+    return rows.isEmpty() ? Collections.emptyList() : repositoryEntityMapper.convertRows(rows);
+  }
+
+  @NonNull
+  @Override
+  public RepositoryPage getUserRepositoriesPage(@NonNull String account, @Nullable RepositoryPage.Cursor after, int pageSize) throws IOException, ApiException {
+    RepositoryPage page = localDataSource.getUserRepositoriesPage(account, after, pageSize);
+    if (after != null || !page.isEmpty()) {
+      return page;
     }
-    List<RoomRepositoryEntity> roomRepositoryEntities = new ArrayList<>(remoteRepositories.size());
-    List<RoomAccountEntity> roomAccountEntities = new ArrayList<>(remoteRepositories.size());
-    for (RepositoryEntity remoteRepository : remoteRepositories) {
-      roomRepositoryEntities.add(entityToRoom(remoteRepository));
-      roomAccountEntities.add(entityToRoom(remoteRepository.getOwner()));
+    RepositoryRows rows = fetchAndStoreRepositories(account, RepositoryListOptions.DEFAULT);
+    return rows.isEmpty() ? page : localDataSource.getUserRepositoriesPage(account, null, pageSize);
+  }
+
+  @NonNull
+  @Override
+  public List<RepositoryEntity> searchRepositories(@NonNull String query, int limit) {
+    return localDataSource.searchRepositories(query, limit);
+  }
+
+  @NonNull
+  @Override
+  public RefreshedRepositories refreshUserRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    RefreshedRepositories revalidated = revalidateUserRepositories(account, options);
+    if (revalidated != null) {
+      return revalidated;
+    }
+    List<RepositoryEntity> localRepositories = getLocalRepositories(account, options);
+    if (!localRepositories.isEmpty()) {
+      return RefreshedRepositories.fresh(localRepositories);
     }
-    localDataSource.insertRepositoriesAndAccounts(roomRepositoryEntities, roomAccountEntities);
-    return remoteRepositories;
+    // validators outlived the cached rows, so fall back to an unconditional request
+    return RefreshedRepositories.fresh(replaceLocalRepositories(account, remoteDataSource.getUserRepositoriesIfModified(account, null, null, options), options));
   }
 
+  /**
+   * Sends the validators of the previous {@link RepositoryListOptions#DEFAULT} response, so an unchanged list costs a <code>304</code>
+   * without JSON decoding and only touches the last synced time.
+   * Other options have no validators of their own and always fetch the whole list.
+   */
+  @Nullable
   @Override
-  public List<RepositoryEntity> refreshUserRepositories(@NonNull String account) throws IOException, ApiException {
-    List<RepositoryEntity> remoteRepositories = remoteDataSource.getUserRepositories(account);
-    if (remoteRepositories.isEmpty()) {
-      return remoteRepositories;
+  public RefreshedRepositories revalidateUserRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    RoomAccountSyncEntity accountSync = hasValidators(options) ? localDataSource.getAccountSync(account) : null;
+    String etag = accountSync == null ? null : accountSync.getEtag();
+    String lastModified = accountSync == null ? null : accountSync.getLastModified();
+    RemoteRepositories remote;
+    try {
+      remote = remoteDataSource.getUserRepositoriesIfModified(account, etag, lastModified, options);
+    } catch (CircuitOpenException e) {
+      return serveCached(account, options, e);
+    }
+    if (remote.isNotModified()) {
+      saveAccountSync(account, etag, lastModified);
+      return null;
+    }
+    return RefreshedRepositories.fresh(replaceLocalRepositories(account, remote, options));
+  }
+
+  /**
+   * Leaves the stored validators and the last synced time alone, so the cache stays stale
+   * and the next {@link #revalidateUserRepositories(String, RepositoryListOptions)} picks up deletions with a full sync.
+   */
+  @NonNull
+  @Override
+  public RefreshedRepositories refreshUserRepositoriesIncrementally(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    ZonedDateTime latestUpdatedAt = localDataSource.getLatestUpdatedAt(account);
+    if (latestUpdatedAt == null) {
+      return refreshUserRepositories(account, options);
+    }
+    RepositoryRows updatedRows;
+    try {
+      updatedRows = remoteDataSource.getUserRepositoriesUpdatedAfter(account, latestUpdatedAt, options.getPerPage());
+    } catch (CircuitOpenException e) {
+      return serveCached(account, options, e);
     }
-    List<RoomRepositoryEntity> roomRepositoryEntities = new ArrayList<>(remoteRepositories.size());
-    List<RoomAccountEntity> roomAccountEntities = new ArrayList<>(remoteRepositories.size());
-    for (RepositoryEntity remoteRepository : remoteRepositories) {
-      roomRepositoryEntities.add(entityToRoom(remoteRepository));
-      roomAccountEntities.add(entityToRoom(remoteRepository.getOwner()));
+    CancellationToken.current().throwIfCancelled();
+    if (!updatedRows.isEmpty()) {
+      localDataSource.insertRepositoriesAndAccounts(updatedRows.getRepositories(), updatedRows.getAccounts());
     }
-    localDataSource.deleteAndInsertRepositoriesAndAccounts(account, roomRepositoryEntities, roomAccountEntities);
-    return remoteRepositories;
-  }
-
-  private RoomRepositoryEntity entityToRoom(RepositoryEntity from) {
-    return new RoomRepositoryEntity(
-        from.getId(),
-        from.getName(),
-        from.getFullName(),
-        from.getHtmlUrl(),
-        from.isPrivate(),
-        from.getDescription(),
-        from.getOwner().getId(),
-        from.getCreatedAt(),
-        from.getUpdatedAt(),
-        from.getPushedAt()
-    );
-  }
-
-  private RoomAccountEntity entityToRoom(AccountEntity from) {
-    return new RoomAccountEntity(
-        from.getId(),
-        from.getLogin(),
-        from.getAvatarUrl(),
-        from.getUrl()
-    );
+    return RefreshedRepositories.fresh(getLocalRepositories(account, options));
+  }
+
+  @Override
+  public boolean isStale(@NonNull String account) {
+    RoomAccountSyncEntity accountSync = localDataSource.getAccountSync(account);
+    return accountSync == null || !freshnessPolicy.isFresh(account, accountSync.getLastSyncedAt());
+  }
+
+  @NonNull
+  private List<RepositoryEntity> getLocalRepositories(@NonNull String account, @NonNull RepositoryListOptions options) {
+    List<RepositoryEntity> localRepositories = localDataSource.getUserRepositories(account);
+    if (localRepositories == null) {
+      return Collections.emptyList();
+    }
+    return inOrder(localRepositories, options);
+  }
+
+  /**
+   * Serves cached repositories in place of a request rejected by the open circuit
+   *
+   * @throws CircuitOpenException as it is when nothing is cached
+   */
+  @NonNull
+  private RefreshedRepositories serveCached(@NonNull String account, @NonNull RepositoryListOptions options, @NonNull CircuitOpenException e) throws CircuitOpenException {
+    List<RepositoryEntity> localRepositories = getLocalRepositories(account, options);
+    if (localRepositories.isEmpty()) {
+      throw e;
+    }
+    Timber.w(e, "serving cached repositories of %s", account);
+    return RefreshedRepositories.stale(localRepositories);
+  }
+
+  /**
+   * @param repositories in {@link RepositoryListOptions#DEFAULT} order
+   */
+  @NonNull
+  private List<RepositoryEntity> inOrder(@NonNull List<RepositoryEntity> repositories, @NonNull RepositoryListOptions options) {
+    if (options.isDefaultOrder() || repositories.size() < 2) {
+      return repositories;
+    }
+    // the local data source may share its list with other callers
+    List<RepositoryEntity> sorted = new ArrayList<>(repositories);
+    Collections.sort(sorted, options.entityComparator());
+    return sorted;
+  }
+
+  /**
+   * Fills a cold cache, preferring the HTTP cache
+   *
+   * @return fetched rows in the order of the options, which are empty when the account has no repository
+   */
+  @NonNull
+  private RepositoryRows fetchAndStoreRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    RemoteRepositories remote = remoteDataSource.getUserRepositoriesPreferringCache(account, options);
+    RepositoryRows rows = remote.getRows();
+    CancellationToken.current().throwIfCancelled();
+    if (!rows.isEmpty()) {
+      localDataSource.insertRepositoriesAndAccounts(rows.getRepositories(), rows.getAccounts());
+    }
+    // an account without repositories is fresh as well
+    saveAccountSync(account, remote, options);
+    return rows;
+  }
+
+  /**
+   * Syncs even an empty list, which deletes the last cached repositories of the account
+   *
+   * @return synced repositories in the order of the options
+   */
+  @NonNull
+  private List<RepositoryEntity> replaceLocalRepositories(@NonNull String account, @NonNull RemoteRepositories remote, @NonNull RepositoryListOptions options) throws IOException {
+    RepositoryRows rows = remote.getRows();
+    CancellationToken.current().throwIfCancelled();
+    localDataSource.syncRepositoriesAndAccounts(account, rows.getRepositories(), rows.getAccounts());
+    saveAccountSync(account, remote, options);
+    return rows.isEmpty() ? Collections.emptyList() : repositoryEntityMapper.convertRows(rows);
+  }
+
+  /**
+   * @return true if the validators stored per account belong to requests with these options
+   */
+  private static boolean hasValidators(@NonNull RepositoryListOptions options) {
+    return options.equals(RepositoryListOptions.DEFAULT);
+  }
+
+  /**
+   * Marks the account as synced. A response to other options keeps the stored validators,
+   * which remain valid for the {@link RepositoryListOptions#DEFAULT} request as GitHub answers <code>200</code> once the list changes.
+   */
+  private void saveAccountSync(@NonNull String account, @NonNull RemoteRepositories remote, @NonNull RepositoryListOptions options) {
+    if (hasValidators(options)) {
+      saveAccountSync(account, remote.getEtag(), remote.getLastModified());
+      return;
+    }
+    RoomAccountSyncEntity accountSync = localDataSource.getAccountSync(account);
+    saveAccountSync(account, accountSync == null ? null : accountSync.getEtag(), accountSync == null ? null : accountSync.getLastModified());
+  }
+
+  private void saveAccountSync(@NonNull String account, @Nullable String etag, @Nullable String lastModified) {
+    localDataSource.saveAccountSync(new RoomAccountSyncEntity(account, etag, lastModified, freshnessPolicy.now()));
   }
 
   public static class Factory {
@@ -107,13 +280,20 @@ public class GitHubInfraRepository implements GitHubRepository {
     @NonNull
     public static synchronized GitHubRepository get(@NonNull Context context) {
       if (instance == null) {
-        GitHubRemoteDataSource remote = new GitHubRestDataSource(
-            GsonProvider.INSTANCE.get(),
-            RetrofitProvider.INSTANCE.get().create(GitHubService.class)
+        GitHubRemoteDataSource remote = new CircuitBreakingRemoteDataSource(
+            new GitHubRestDataSource.Builder(
+                GsonProvider.INSTANCE.get(),
+                RetrofitProvider.INSTANCE.get().create(GitHubService.class)
+            )
+                .requestRetrier(new RequestRetrier())
+                .build()
         );
-        GitHubLocalDataSource local = new GitHubRoomDataSource(
-            DatabaseProvider.Factory.getInstance(context),
-            RepositoryEntityMapper.Factory.INSTANCE.get()
+        GitHubLocalDataSource local = new GitHubMemoryDataSource(
+            new GitHubRoomDataSource(
+                DatabaseProvider.Factory.getInstance(context),
+                RepositoryEntityMapper.Factory.INSTANCE.get()
+            ),
+            GitHubMemoryDataSource.defaultMaxBytes()
         );
         instance = new GitHubInfraRepository(remote, local);
       }
@@ -1,12 +1,15 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import java.io.IOException;
 import java.util.List;
 
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.RepositoryPage;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RepositoryListOptions;
 
 /**
  * Repository Interface for GitHub
@@ -15,8 +18,60 @@ import us.shiroyama.android.my_repositories.infrastructure.exception.ApiExceptio
  */
 
 public interface GitHubRepository {
+  /**
+   * @param options page size of remote calls and the order of the result
+   */
   @NonNull
-  List<RepositoryEntity> getUserRepositories(@NonNull String account) throws IOException, ApiException;
+  List<RepositoryEntity> getUserRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException;
 
-  List<RepositoryEntity> refreshUserRepositories(@NonNull String account) throws IOException, ApiException;
+  /**
+   * Reads one page of repositories newest first, so memory is bounded by the page size rather than by the account.
+   * Like {@link #getUserRepositories(String, RepositoryListOptions)}, only the first page of a cold cache blocks on the network.
+   *
+   * @param after cursor of the previous page, or null for the first one
+   */
+  @NonNull
+  RepositoryPage getUserRepositoriesPage(@NonNull String account, @Nullable RepositoryPage.Cursor after, int pageSize) throws IOException, ApiException;
+
+  /**
+   * Searches the cached repositories of every account by name and description, without touching the network
+   *
+   * @return at most <code>limit</code> repositories, best matches first
+   */
+  @NonNull
+  List<RepositoryEntity> searchRepositories(@NonNull String query, int limit);
+
+  /**
+   * Falls back to cached repositories marked as stale while the circuit to the API is open,
+   * and only fails with the {@link us.shiroyama.android.my_repositories.infrastructure.exception.CircuitOpenException} when nothing is cached.
+   */
+  @NonNull
+  RefreshedRepositories refreshUserRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException;
+
+  /**
+   * Same as {@link #refreshUserRepositories(String, RepositoryListOptions)} but tells whether anything has changed
+   *
+   * @return new repositories, or cached ones marked as stale while the circuit is open,
+   * or null when the remote list has not been modified since the last sync
+   */
+  @Nullable
+  RefreshedRepositories revalidateUserRepositories(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException;
+
+  /**
+   * Fetches only the repositories updated after the newest cached one and merges them into the cache.
+   * Falls back to {@link #refreshUserRepositories(String, RepositoryListOptions)} on a cold cache.
+   * <p>
+   * Deleted repositories are not detected and the last synced time is not updated,
+   * so they are removed by the next full refresh or revalidation.
+   * Falls back to cached repositories like {@link #refreshUserRepositories(String, RepositoryListOptions)} while the circuit is open.
+   *
+   * @return all cached repositories after the merge
+   */
+  @NonNull
+  RefreshedRepositories refreshUserRepositoriesIncrementally(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException;
+
+  /**
+   * @return true when the cached repositories of the account are older than the freshness policy allows
+   */
+  boolean isStale(@NonNull String account);
 }
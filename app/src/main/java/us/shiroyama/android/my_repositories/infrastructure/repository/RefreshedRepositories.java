@@ -0,0 +1,50 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+
+/**
+ * Repositories after a refresh, which are cached ones marked as stale when the circuit to the API was open
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RefreshedRepositories {
+  @NonNull
+  private final List<RepositoryEntity> repositories;
+
+  private final boolean stale;
+
+  private RefreshedRepositories(@NonNull List<RepositoryEntity> repositories, boolean stale) {
+    this.repositories = repositories;
+    this.stale = stale;
+  }
+
+  @NonNull
+  public static RefreshedRepositories fresh(@NonNull List<RepositoryEntity> repositories) {
+    return new RefreshedRepositories(repositories, false);
+  }
+
+  /**
+   * @param repositories cached repositories served in place of the remote ones
+   */
+  @NonNull
+  public static RefreshedRepositories stale(@NonNull List<RepositoryEntity> repositories) {
+    return new RefreshedRepositories(repositories, true);
+  }
+
+  @NonNull
+  public List<RepositoryEntity> getRepositories() {
+    return repositories;
+  }
+
+  /**
+   * @return true if the API could not be reached and these are cached repositories
+   */
+  public boolean isStale() {
+    return stale;
+  }
+}
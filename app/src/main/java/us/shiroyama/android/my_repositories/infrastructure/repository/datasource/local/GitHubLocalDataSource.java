@@ -1,11 +1,15 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.ZonedDateTime;
 
 import java.util.List;
 
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
 
 /**
@@ -17,7 +21,38 @@ import us.shiroyama.android.my_repositories.infrastructure.repository.datasource
 public interface GitHubLocalDataSource {
   List<RepositoryEntity> getUserRepositories(@NonNull String account);
 
+  /**
+   * Reads one page in the order of {@link #getUserRepositories(String)}
+   *
+   * @param after cursor of the previous page, or null for the first one
+   */
+  @NonNull
+  RepositoryPage getUserRepositoriesPage(@NonNull String account, @Nullable RepositoryPage.Cursor after, int pageSize);
+
+  /**
+   * Searches names and descriptions of the stored repositories of every account
+   *
+   * @param query words typed by the user, each matching as a prefix
+   * @return at most <code>limit</code> repositories, best matches first
+   */
+  @NonNull
+  List<RepositoryEntity> searchRepositories(@NonNull String query, int limit);
+
+  /**
+   * @param accounts distinct owners of <code>repositories</code>, they are not deduplicated again
+   */
   void insertRepositoriesAndAccounts(@NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts);
 
-  void deleteAndInsertRepositoriesAndAccounts(@NonNull String account, @NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts);
+  void syncRepositoriesAndAccounts(@NonNull String account, @NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts);
+
+  /**
+   * @return newest <code>updated_at</code> among the stored repositories of the account, or null if none is stored
+   */
+  @Nullable
+  ZonedDateTime getLatestUpdatedAt(@NonNull String account);
+
+  @Nullable
+  RoomAccountSyncEntity getAccountSync(@NonNull String account);
+
+  void saveAccountSync(@NonNull RoomAccountSyncEntity accountSync);
 }
@@ -0,0 +1,203 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import org.threeten.bp.ZonedDateTime;
+
+import java.util.Collections;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.AccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+
+/**
+ * In-memory LRU tier in front of another {@link GitHubLocalDataSource}
+ * <p>
+ * Keyed by account login and bounded by the estimated byte size of the cached repositories.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class GitHubMemoryDataSource implements GitHubLocalDataSource {
+  private static final int OBJECT_OVERHEAD = 16;
+  private static final int REFERENCE = 4;
+  private static final int ZONED_DATE_TIME = 96;
+
+  @NonNull
+  private final GitHubLocalDataSource delegate;
+
+  @NonNull
+  private final LruCache<String, List<RepositoryEntity>> cache;
+
+  @NonNull
+  private final Object lock = new Object();
+
+  /**
+   * bumped on every invalidation so that a load racing with a write is not cached
+   */
+  private long generation;
+
+  public GitHubMemoryDataSource(@NonNull GitHubLocalDataSource delegate, int maxBytes) {
+    this.delegate = delegate;
+    this.cache = new LruCache<String, List<RepositoryEntity>>(maxBytes) {
+      @Override
+      protected int sizeOf(@NonNull String key, @NonNull List<RepositoryEntity> value) {
+        return estimateBytes(value);
+      }
+    };
+  }
+
+  /**
+   * @return 1/32 of the heap, a common budget for a secondary in-memory cache
+   */
+  public static int defaultMaxBytes() {
+    return (int) Math.min(Runtime.getRuntime().maxMemory() / 32, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<RepositoryEntity> getUserRepositories(@NonNull String account) {
+    long loadGeneration;
+    synchronized (lock) {
+      List<RepositoryEntity> cached = cache.get(account);
+      if (cached != null) {
+        return cached;
+      }
+      loadGeneration = generation;
+    }
+    List<RepositoryEntity> loaded = delegate.getUserRepositories(account);
+    if (loaded.isEmpty()) {
+      return loaded;
+    }
+    List<RepositoryEntity> unmodifiable = Collections.unmodifiableList(loaded);
+    synchronized (lock) {
+      if (loadGeneration == generation) {
+        cache.put(account, unmodifiable);
+      }
+    }
+    return unmodifiable;
+  }
+
+  /**
+   * Sliced from a cached list when present. Otherwise the page is read through without caching,
+   * so an account too large to hold is never loaded in full.
+   */
+  @NonNull
+  @Override
+  public RepositoryPage getUserRepositoriesPage(@NonNull String account, @Nullable RepositoryPage.Cursor after, int pageSize) {
+    synchronized (lock) {
+      List<RepositoryEntity> cached = cache.get(account);
+      if (cached != null) {
+        return RepositoryPage.slice(cached, after, pageSize);
+      }
+    }
+    return delegate.getUserRepositoriesPage(account, after, pageSize);
+  }
+
+  @NonNull
+  @Override
+  public List<RepositoryEntity> searchRepositories(@NonNull String query, int limit) {
+    return delegate.searchRepositories(query, limit);
+  }
+
+  @Override
+  public void insertRepositoriesAndAccounts(@NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts) {
+    delegate.insertRepositoriesAndAccounts(repositories, accounts);
+    synchronized (lock) {
+      generation++;
+      for (RoomAccountEntity account : accounts) {
+        cache.remove(account.getLogin());
+      }
+    }
+  }
+
+  @Override
+  public void syncRepositoriesAndAccounts(@NonNull String account, @NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts) {
+    delegate.syncRepositoriesAndAccounts(account, repositories, accounts);
+    synchronized (lock) {
+      generation++;
+      cache.remove(account);
+    }
+  }
+
+  /**
+   * Answered from the cache when possible since cached lists are sorted by <code>updated_at</code> descending
+   */
+  @Nullable
+  @Override
+  public ZonedDateTime getLatestUpdatedAt(@NonNull String account) {
+    synchronized (lock) {
+      List<RepositoryEntity> cached = cache.get(account);
+      if (cached != null) {
+        return cached.get(0).getUpdatedAt();
+      }
+    }
+    return delegate.getLatestUpdatedAt(account);
+  }
+
+  @Nullable
+  @Override
+  public RoomAccountSyncEntity getAccountSync(@NonNull String account) {
+    return delegate.getAccountSync(account);
+  }
+
+  @Override
+  public void saveAccountSync(@NonNull RoomAccountSyncEntity accountSync) {
+    delegate.saveAccountSync(accountSync);
+  }
+
+  public int hitCount() {
+    return cache.hitCount();
+  }
+
+  public int missCount() {
+    return cache.missCount();
+  }
+
+  public int evictionCount() {
+    return cache.evictionCount();
+  }
+
+  /**
+   * @return estimated bytes currently held
+   */
+  public int size() {
+    return cache.size();
+  }
+
+  public int maxSize() {
+    return cache.maxSize();
+  }
+
+  static int estimateBytes(@NonNull List<RepositoryEntity> repositories) {
+    int bytes = OBJECT_OVERHEAD + REFERENCE * repositories.size();
+    for (RepositoryEntity repository : repositories) {
+      bytes += OBJECT_OVERHEAD + 8 + 1 + REFERENCE * 8
+          + estimateBytes(repository.getName())
+          + estimateBytes(repository.getFullName())
+          + estimateBytes(repository.getHtmlUrl())
+          + estimateBytes(repository.getDescription())
+          + estimateBytes(repository.getOwner())
+          + ZONED_DATE_TIME * 3;
+    }
+    return bytes;
+  }
+
+  private static int estimateBytes(@Nullable AccountEntity account) {
+    if (account == null) {
+      return 0;
+    }
+    return OBJECT_OVERHEAD + 8 + REFERENCE * 3
+        + estimateBytes(account.getLogin())
+        + estimateBytes(account.getAvatarUrl())
+        + estimateBytes(account.getUrl());
+  }
+
+  private static int estimateBytes(@Nullable String string) {
+    return string == null ? 0 : OBJECT_OVERHEAD + 12 + 2 * string.length();
+  }
+}
@@ -1,20 +1,33 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local;
 
+import android.database.Cursor;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import com.annimon.stream.Stream;
+import org.threeten.bp.ZonedDateTime;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.AppDatabase;
-import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DatabaseProvider;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DateConverter;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.RepositoryFtsTable;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.mapper.RepositoryCursorReader;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.mapper.RepositoryEntityMapper;
 
 /**
  * Local Data Source for GitHub using Room
+ * <p>
+ * Reads run on the calling thread. Writes run on a single writer thread while the caller waits,
+ * so they are visible to the caller's next read.
  *
  * @author Fumihiko Shiroyama
  */
@@ -26,24 +39,123 @@ public class GitHubRoomDataSource implements GitHubLocalDataSource {
   @NonNull
   private final RepositoryEntityMapper repositoryEntityMapper;
 
+  @NonNull
+  private final ExecutorService writeExecutor;
+
+  @NonNull
+  private final RepositoryCursorReader repositoryCursorReader;
+
   public GitHubRoomDataSource(@NonNull AppDatabase db, @NonNull RepositoryEntityMapper repositoryEntityMapper) {
+    this(db, repositoryEntityMapper, DatabaseProvider.Factory.getWriteExecutor());
+  }
+
+  public GitHubRoomDataSource(@NonNull AppDatabase db, @NonNull RepositoryEntityMapper repositoryEntityMapper, @NonNull ExecutorService writeExecutor) {
+    this(db, repositoryEntityMapper, writeExecutor, RepositoryCursorReader.Factory.INSTANCE.get());
+  }
+
+  public GitHubRoomDataSource(@NonNull AppDatabase db, @NonNull RepositoryEntityMapper repositoryEntityMapper, @NonNull ExecutorService writeExecutor, @NonNull RepositoryCursorReader repositoryCursorReader) {
     this.db = db;
     this.repositoryEntityMapper = repositoryEntityMapper;
+    this.writeExecutor = writeExecutor;
+    this.repositoryCursorReader = repositoryCursorReader;
   }
 
+  /**
+   * Read straight from the cursor, since this is the largest read of the app
+   */
   @Override
   public List<RepositoryEntity> getUserRepositories(@NonNull String account) {
-    List<RepoWithAccount> repoWithAccountList = db.repositoryDao().findByAccount(account);
-    return repositoryEntityMapper.convertList(repoWithAccountList);
+    return read(db.repositoryDao().findCursorByAccount(account));
+  }
+
+  /**
+   * Reads one row beyond the page to learn whether another page follows
+   */
+  @NonNull
+  @Override
+  public RepositoryPage getUserRepositoriesPage(@NonNull String account, @Nullable RepositoryPage.Cursor after, int pageSize) {
+    Cursor cursor = after == null
+        ? db.repositoryDao().findPageCursorByAccount(account, pageSize + 1)
+        : db.repositoryDao().findPageCursorByAccountAfter(account, after.getUpdatedAt(), after.getId(), pageSize + 1);
+    return RepositoryPage.slice(read(cursor), null, pageSize);
+  }
+
+  @NonNull
+  @Override
+  public List<RepositoryEntity> searchRepositories(@NonNull String query, int limit) {
+    String match = RepositoryFtsTable.toMatchQuery(query);
+    if (match == null) {
+      return Collections.emptyList();
+    }
+    return repositoryEntityMapper.convertList(db.repositoryDao().search(match, limit));
   }
 
   @Override
   public void insertRepositoriesAndAccounts(@NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts) {
-    db.repositoryDao().insertRepositoriesAndAccounts(repositories, Stream.of(accounts).distinct().toList());
+    write(() -> db.repositoryDao().insertRepositoriesAndAccounts(repositories, accounts));
+  }
+
+  @Override
+  public void syncRepositoriesAndAccounts(@NonNull String account, @NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts) {
+    write(() -> db.repositoryDao().syncRepositoriesAndAccounts(account, repositories, accounts));
   }
 
+  @Nullable
   @Override
-  public void deleteAndInsertRepositoriesAndAccounts(@NonNull String account, @NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts) {
-    db.repositoryDao().deleteAndInsertRepositoriesAndAccounts(account, repositories, Stream.of(accounts).distinct().toList());
+  public ZonedDateTime getLatestUpdatedAt(@NonNull String account) {
+    Long latestUpdatedAt = db.repositoryDao().findLatestUpdatedAt(account);
+    return latestUpdatedAt == null ? null : DateConverter.fromTimeToDate(latestUpdatedAt);
+  }
+
+  @Nullable
+  @Override
+  public RoomAccountSyncEntity getAccountSync(@NonNull String account) {
+    return db.accountSyncDao().findByAccount(account);
+  }
+
+  @Override
+  public void saveAccountSync(@NonNull RoomAccountSyncEntity accountSync) {
+    write(() -> db.accountSyncDao().insert(accountSync));
+  }
+
+  @NonNull
+  private List<RepositoryEntity> read(@NonNull Cursor cursor) {
+    try {
+      return repositoryCursorReader.read(cursor);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Waits for the write even when interrupted, since a half-known outcome helps nobody.
+   * The interrupt is restored afterwards.
+   */
+  private void write(@NonNull Runnable write) {
+    Future<?> future = writeExecutor.submit(write);
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 }
@@ -0,0 +1,128 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+
+/**
+ * One page of stored repositories in <code>updated_at</code> descending order, ties broken by descending id
+ * <p>
+ * The next page is addressed by the key of the last repository rather than by an offset,
+ * so reading it costs the same however deep it is and rows written meanwhile neither repeat nor go missing.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryPage {
+  @NonNull
+  private final List<RepositoryEntity> repositories;
+
+  @Nullable
+  private final Cursor next;
+
+  public RepositoryPage(@NonNull List<RepositoryEntity> repositories, @Nullable Cursor next) {
+    this.repositories = repositories;
+    this.next = next;
+  }
+
+  @NonNull
+  public static RepositoryPage empty() {
+    return new RepositoryPage(Collections.emptyList(), null);
+  }
+
+  /**
+   * Cuts a page out of repositories in page order
+   *
+   * @param after cursor of the previous page, or null for the first one
+   */
+  @NonNull
+  public static RepositoryPage slice(@NonNull List<RepositoryEntity> repositories, @Nullable Cursor after, int pageSize) {
+    int from = 0;
+    if (after != null) {
+      while (from < repositories.size() && !after.precedes(repositories.get(from))) {
+        from++;
+      }
+    }
+    int to = Math.min(from + pageSize, repositories.size());
+    Cursor next = to < repositories.size() ? Cursor.of(repositories.get(to - 1)) : null;
+    return new RepositoryPage(new ArrayList<>(repositories.subList(from, to)), next);
+  }
+
+  @NonNull
+  public List<RepositoryEntity> getRepositories() {
+    return repositories;
+  }
+
+  /**
+   * @return cursor of the following page, or null if this is the last one
+   */
+  @Nullable
+  public Cursor getNext() {
+    return next;
+  }
+
+  public boolean isEmpty() {
+    return repositories.isEmpty();
+  }
+
+  /**
+   * Key of the last repository of a page
+   */
+  public static final class Cursor {
+    /**
+     * epoch seconds as stored in Room
+     */
+    private final long updatedAt;
+
+    private final long id;
+
+    public Cursor(long updatedAt, long id) {
+      this.updatedAt = updatedAt;
+      this.id = id;
+    }
+
+    @NonNull
+    public static Cursor of(@NonNull RepositoryEntity repository) {
+      return new Cursor(repository.getUpdatedAt().toEpochSecond(), repository.getId());
+    }
+
+    public long getUpdatedAt() {
+      return updatedAt;
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    /**
+     * @return true if the repository belongs to a page after this cursor
+     */
+    boolean precedes(@NonNull RepositoryEntity repository) {
+      long repositoryUpdatedAt = repository.getUpdatedAt().toEpochSecond();
+      return repositoryUpdatedAt < updatedAt || (repositoryUpdatedAt == updatedAt && repository.getId() < id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Cursor cursor = (Cursor) o;
+
+      if (updatedAt != cursor.updatedAt) return false;
+      return id == cursor.id;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = (int) (updatedAt ^ (updatedAt >>> 32));
+      result = 31 * result + (int) (id ^ (id >>> 32));
+      return result;
+    }
+  }
+}
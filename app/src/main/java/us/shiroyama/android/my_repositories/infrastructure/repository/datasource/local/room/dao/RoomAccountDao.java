@@ -17,10 +17,12 @@ import us.shiroyama.android.my_repositories.infrastructure.repository.datasource
 
 @Dao
 public interface RoomAccountDao {
+  String FIND_BY_ACCOUNT = "SELECT * FROM account WHERE login = :account LIMIT 1";
+
   @Query("SELECT * FROM account")
   List<RoomAccountEntity> getAll();
 
-  @Query("SELECT * FROM account WHERE login = :account LIMIT 1")
+  @Query(FIND_BY_ACCOUNT)
   RoomAccountEntity findByAccount(String account);
 
   @Insert
@@ -0,0 +1,25 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
+
+/**
+ * {@link Dao} for {@link RoomAccountSyncEntity}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+@Dao
+public interface RoomAccountSyncDao {
+  String FIND_BY_ACCOUNT = "SELECT * FROM account_sync WHERE login = :account LIMIT 1";
+
+  @Query(FIND_BY_ACCOUNT)
+  RoomAccountSyncEntity findByAccount(String account);
+
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  void insert(RoomAccountSyncEntity accountSync);
+}
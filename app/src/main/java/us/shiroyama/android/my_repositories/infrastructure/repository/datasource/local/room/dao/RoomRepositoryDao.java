@@ -1,35 +1,47 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao;
 
+import android.arch.persistence.db.SupportSQLiteStatement;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Delete;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.RoomDatabase;
 import android.arch.persistence.room.Transaction;
+import android.arch.persistence.room.Update;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
 
-import com.annimon.stream.Stream;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.RepositoryFtsTable;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryVersion;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
 
 /**
  * {@link Dao} for {@link RoomRepositoryEntity}
+ * <p>
+ * The transactions writing repositories also keep {@link RepositoryFtsTable} in sync,
+ * which the single-table methods they are built from do not.
  *
  * @author Fumihiko Shiroyama
  */
 
 @Dao
 public abstract class RoomRepositoryDao {
-  @Query("SELECT * FROM repository")
-  public abstract List<RoomRepositoryEntity> getAll();
-
-  @Query("SELECT * FROM repository WHERE account_id = :accountId")
-  public abstract List<RoomRepositoryEntity> findByAccountId(long accountId);
+  /**
+   * stay well below SQLITE_MAX_VARIABLE_NUMBER (999) for <code>IN (:ids)</code> queries
+   */
+  private static final int MAX_BIND_ARGS = 500;
 
-  @Query("SELECT repository.id AS repo_id," +
+  private static final String SELECT_REPO_WITH_ACCOUNT = "SELECT repository.id AS repo_id," +
       "repository.name AS repo_name," +
       "repository.full_name AS repo_full_name," +
       "repository.html_url AS repo_html_url," +
@@ -43,11 +55,87 @@ public abstract class RoomRepositoryDao {
       "account.login AS account_login," +
       "account.avatar_url AS account_avatar_url," +
       "account.url AS account_url " +
-      "FROM repository INNER JOIN account ON repository.account_id = account.id " +
+      "FROM repository INNER JOIN account ON repository.account_id = account.id ";
+
+  // queries are constants so that tests can check their plans against the indices
+
+  static final String FIND_BY_ACCOUNT_ID = "SELECT * FROM repository WHERE account_id = :accountId";
+
+  static final String FIND_BY_ACCOUNT = SELECT_REPO_WITH_ACCOUNT +
+      "WHERE account.login = :account " +
+      "ORDER BY repository.updated_at DESC, repository.id DESC";
+
+  static final String FIND_PAGE_BY_ACCOUNT = FIND_BY_ACCOUNT + " LIMIT :limit";
+
+  static final String FIND_PAGE_BY_ACCOUNT_AFTER = SELECT_REPO_WITH_ACCOUNT +
       "WHERE account.login = :account " +
-      "ORDER BY repository.updated_at DESC")
+      "AND (repository.updated_at < :updatedAt OR (repository.updated_at = :updatedAt AND repository.id < :id)) " +
+      "ORDER BY repository.updated_at DESC, repository.id DESC " +
+      "LIMIT :limit";
+
+  static final String FIND_LATEST_UPDATED_AT = "SELECT MAX(repository.updated_at) FROM repository " +
+      "INNER JOIN account ON repository.account_id = account.id " +
+      "WHERE account.login = :account";
+
+  static final String DELETE_REPOSITORIES_BY_IDS = "DELETE FROM repository WHERE id IN (:ids)";
+
+  static final String FIND_ACCOUNT_ID_BY_LOGIN = "SELECT id FROM account WHERE login = :account LIMIT 1";
+
+  static final String FIND_VERSIONS_BY_ACCOUNT_ID = "SELECT id, updated_at, pushed_at FROM repository WHERE account_id = :accountId";
+
+  static final String FIND_ACCOUNTS_BY_IDS = "SELECT * FROM account WHERE id IN (:ids)";
+
+  static final String FIND_BY_IDS = SELECT_REPO_WITH_ACCOUNT + "WHERE repository.id IN (:ids)";
+
+  @NonNull
+  private final RoomDatabase db;
+
+  public RoomRepositoryDao(@NonNull RoomDatabase db) {
+    this.db = db;
+  }
+
+  @Query("SELECT * FROM repository")
+  public abstract List<RoomRepositoryEntity> getAll();
+
+  @Query(FIND_BY_ACCOUNT_ID)
+  public abstract List<RoomRepositoryEntity> findByAccountId(long accountId);
+
+  @Query(FIND_BY_ACCOUNT)
   public abstract List<RepoWithAccount> findByAccount(String account);
 
+  /**
+   * First page in the order of {@link #findByAccount(String)}
+   */
+  @Query(FIND_PAGE_BY_ACCOUNT)
+  public abstract List<RepoWithAccount> findPageByAccount(String account, int limit);
+
+  /**
+   * Page following the repository with the given key, which seeks instead of skipping an offset
+   *
+   * @param updatedAt epoch seconds of the last repository of the previous page
+   * @param id        id of the last repository of the previous page
+   */
+  @Query(FIND_PAGE_BY_ACCOUNT_AFTER)
+  public abstract List<RepoWithAccount> findPageByAccountAfter(String account, long updatedAt, long id, int limit);
+
+  /**
+   * Same as {@link #findByAccount(String)} as a cursor to be read without intermediate entities
+   */
+  @Query(FIND_BY_ACCOUNT)
+  public abstract Cursor findCursorByAccount(String account);
+
+  @Query(FIND_PAGE_BY_ACCOUNT)
+  public abstract Cursor findPageCursorByAccount(String account, int limit);
+
+  @Query(FIND_PAGE_BY_ACCOUNT_AFTER)
+  public abstract Cursor findPageCursorByAccountAfter(String account, long updatedAt, long id, int limit);
+
+  /**
+   * @return epoch seconds of the newest <code>updated_at</code>, or null when the account has no repository
+   */
+  @Query(FIND_LATEST_UPDATED_AT)
+  public abstract Long findLatestUpdatedAt(String account);
+
   @Insert(onConflict = OnConflictStrategy.REPLACE)
   public abstract void insertAllRepositories(RoomRepositoryEntity... repositories);
 
@@ -57,22 +145,199 @@ public abstract class RoomRepositoryDao {
   @Insert(onConflict = OnConflictStrategy.REPLACE)
   public abstract void insertAllAccounts(RoomAccountEntity... accounts);
 
+  @Update
+  public abstract int updateAllRepositories(RoomRepositoryEntity... repositories);
+
+  @Query(DELETE_REPOSITORIES_BY_IDS)
+  public abstract int deleteRepositoriesByIds(List<Long> ids);
+
+  @Query(FIND_ACCOUNT_ID_BY_LOGIN)
+  public abstract Long findAccountIdByLogin(String account);
+
+  @Query(FIND_VERSIONS_BY_ACCOUNT_ID)
+  public abstract List<RepositoryVersion> findVersionsByAccountId(long accountId);
+
+  @Query(FIND_ACCOUNTS_BY_IDS)
+  public abstract List<RoomAccountEntity> findAccountsByIds(List<Long> ids);
+
+  @Query(FIND_BY_IDS)
+  public abstract List<RepoWithAccount> findByIds(List<Long> ids);
+
+  /**
+   * Searches names and descriptions of the repositories of every account
+   *
+   * @param match expression made by {@link RepositoryFtsTable#toMatchQuery(String)}
+   * @return best matches first
+   */
+  @Transaction
+  public List<RepoWithAccount> search(String match, int limit) {
+    // keeps the best matches with the worst on top, so memory is bounded by the limit rather than by the matches
+    PriorityQueue<RankedId> best = new PriorityQueue<>();
+    try (Cursor cursor = db.query(RepositoryFtsTable.MATCH, new Object[]{match})) {
+      while (cursor.moveToNext()) {
+        best.add(new RankedId(cursor.getLong(0), RepositoryFtsTable.rank(cursor.getBlob(1))));
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+    }
+    if (best.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<RankedId> ranked = new ArrayList<>(best);
+    Collections.sort(ranked, Collections.reverseOrder());
+    List<Long> ids = new ArrayList<>(ranked.size());
+    for (RankedId rankedId : ranked) {
+      ids.add(rankedId.id);
+    }
+    Map<Long, RepoWithAccount> found = new HashMap<>();
+    for (int from = 0; from < ids.size(); from += MAX_BIND_ARGS) {
+      for (RepoWithAccount repoWithAccount : findByIds(ids.subList(from, Math.min(from + MAX_BIND_ARGS, ids.size())))) {
+        found.put(repoWithAccount.repository.getId(), repoWithAccount);
+      }
+    }
+    List<RepoWithAccount> result = new ArrayList<>(found.size());
+    for (Long id : ids) {
+      RepoWithAccount repoWithAccount = found.get(id);
+      // a repository whose owner is not stored cannot be shown
+      if (repoWithAccount != null) {
+        result.add(repoWithAccount);
+      }
+    }
+    return result;
+  }
+
   @Transaction
   public void insertRepositoriesAndAccounts(List<RoomRepositoryEntity> repositories, List<RoomAccountEntity> accounts) {
     insertAllRepositories(repositories.toArray(new RoomRepositoryEntity[repositories.size()]));
     insertAllAccounts(accounts.toArray(new RoomAccountEntity[accounts.size()]));
+    indexRepositories(repositories);
   }
 
+  /**
+   * Makes the stored repositories of the account equal to the given ones,
+   * writing only the rows that were added, changed or removed.
+   *
+   * @return number of rows written
+   */
   @Transaction
-  public void deleteAndInsertRepositoriesAndAccounts(String account, List<RoomRepositoryEntity> repositories, List<RoomAccountEntity> accounts) {
-    List<RepoWithAccount> repoWithAccountList = findByAccount(account);
-    List<RoomRepositoryEntity> roomRepositoryEntities = Stream.of(repoWithAccountList)
-        .map(repoWithAccount -> repoWithAccount.repository)
-        .toList();
-    if (!roomRepositoryEntities.isEmpty()) {
-      deleteAllRepositories(roomRepositoryEntities.toArray(new RoomRepositoryEntity[roomRepositoryEntities.size()]));
+  public int syncRepositoriesAndAccounts(String account, List<RoomRepositoryEntity> repositories, List<RoomAccountEntity> accounts) {
+    Map<Long, RepositoryVersion> storedVersions = new HashMap<>();
+    Long accountId = findAccountIdByLogin(account);
+    if (accountId != null) {
+      for (RepositoryVersion version : findVersionsByAccountId(accountId)) {
+        storedVersions.put(version.id, version);
+      }
+    }
+
+    List<RoomRepositoryEntity> inserts = new ArrayList<>();
+    List<RoomRepositoryEntity> updates = new ArrayList<>();
+    for (RoomRepositoryEntity repository : repositories) {
+      RepositoryVersion storedVersion = storedVersions.remove(repository.getId());
+      if (storedVersion == null) {
+        inserts.add(repository);
+      } else if (!storedVersion.isSameVersionAs(repository)) {
+        updates.add(repository);
+      }
+    }
+
+    int written = 0;
+    List<Long> deletes = new ArrayList<>(storedVersions.keySet());
+    for (int from = 0; from < deletes.size(); from += MAX_BIND_ARGS) {
+      written += deleteRepositoriesByIds(deletes.subList(from, Math.min(from + MAX_BIND_ARGS, deletes.size())));
+    }
+    unindexRepositories(deletes);
+    if (!updates.isEmpty()) {
+      written += updateAllRepositories(updates.toArray(new RoomRepositoryEntity[updates.size()]));
+      indexRepositories(updates);
+    }
+    if (!inserts.isEmpty()) {
+      // REPLACE also covers a repository transferred from another account
+      insertAllRepositories(inserts.toArray(new RoomRepositoryEntity[inserts.size()]));
+      indexRepositories(inserts);
+      written += inserts.size();
+    }
+    written += syncAccounts(accounts);
+    return written;
+  }
+
+  /**
+   * Adds or replaces the search index rows of the repositories
+   */
+  private void indexRepositories(List<RoomRepositoryEntity> repositories) {
+    if (repositories.isEmpty()) {
+      return;
+    }
+    SupportSQLiteStatement delete = db.compileStatement(RepositoryFtsTable.DELETE);
+    SupportSQLiteStatement insert = db.compileStatement(RepositoryFtsTable.INSERT);
+    for (RoomRepositoryEntity repository : repositories) {
+      delete.bindLong(1, repository.getId());
+      delete.executeUpdateDelete();
+      insert.bindLong(1, repository.getId());
+      bindNullable(insert, 2, repository.getName());
+      bindNullable(insert, 3, repository.getDescription());
+      insert.executeInsert();
+    }
+  }
+
+  private void unindexRepositories(List<Long> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    SupportSQLiteStatement delete = db.compileStatement(RepositoryFtsTable.DELETE);
+    for (Long id : ids) {
+      delete.bindLong(1, id);
+      delete.executeUpdateDelete();
+    }
+  }
+
+  private static void bindNullable(SupportSQLiteStatement statement, int index, String value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindString(index, value);
+    }
+  }
+
+  private int syncAccounts(List<RoomAccountEntity> accounts) {
+    if (accounts.isEmpty()) {
+      return 0;
+    }
+    List<Long> ids = new ArrayList<>(accounts.size());
+    for (RoomAccountEntity account : accounts) {
+      ids.add(account.getId());
+    }
+    List<RoomAccountEntity> storedAccounts = new ArrayList<>(accounts.size());
+    for (int from = 0; from < ids.size(); from += MAX_BIND_ARGS) {
+      storedAccounts.addAll(findAccountsByIds(ids.subList(from, Math.min(from + MAX_BIND_ARGS, ids.size()))));
+    }
+    List<RoomAccountEntity> changedAccounts = new ArrayList<>(accounts);
+    changedAccounts.removeAll(storedAccounts);
+    if (changedAccounts.isEmpty()) {
+      return 0;
+    }
+    insertAllAccounts(changedAccounts.toArray(new RoomAccountEntity[changedAccounts.size()]));
+    return changedAccounts.size();
+  }
+
+  /**
+   * Repository id ordered by its rank
+   */
+  private static class RankedId implements Comparable<RankedId> {
+    final long id;
+
+    final double rank;
+
+    RankedId(long id, double rank) {
+      this.id = id;
+      this.rank = rank;
+    }
+
+    @Override
+    public int compareTo(@NonNull RankedId other) {
+      int byRank = Double.compare(rank, other.rank);
+      // prefer the smaller id on a tie, so results do not depend on the scan order
+      return byRank != 0 ? byRank : Long.compare(other.id, id);
     }
-    insertAllRepositories(repositories.toArray(new RoomRepositoryEntity[repositories.size()]));
-    insertAllAccounts(accounts.toArray(new RoomAccountEntity[accounts.size()]));
   }
 }
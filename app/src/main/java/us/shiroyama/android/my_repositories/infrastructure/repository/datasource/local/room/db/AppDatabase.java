@@ -5,8 +5,10 @@ import android.arch.persistence.room.RoomDatabase;
 import android.arch.persistence.room.TypeConverters;
 
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao.RoomAccountDao;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao.RoomAccountSyncDao;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao.RoomRepositoryDao;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
 
 /**
@@ -15,10 +17,12 @@ import us.shiroyama.android.my_repositories.infrastructure.repository.datasource
  * @author Fumihiko Shiroyama
  */
 
-@Database(entities = {RoomAccountEntity.class, RoomRepositoryEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {RoomAccountEntity.class, RoomRepositoryEntity.class, RoomAccountSyncEntity.class}, version = 5, exportSchema = false)
 @TypeConverters({DateConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
   public abstract RoomAccountDao accountDao();
 
   public abstract RoomRepositoryDao repositoryDao();
+
+  public abstract RoomAccountSyncDao accountSyncDao();
 }
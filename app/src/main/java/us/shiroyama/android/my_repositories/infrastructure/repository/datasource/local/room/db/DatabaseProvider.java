@@ -1,11 +1,21 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db;
 
 import android.arch.persistence.room.Room;
+import android.arch.persistence.room.RoomDatabase;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import us.shiroyama.android.my_repositories.BuildConfig;
+
 /**
  * {@link AppDatabase} Provider
+ * <p>
+ * The database is opened in write-ahead-log mode, so reading one account never waits for
+ * a transaction refreshing another one. Queries on the main thread throw,
+ * and debug builds also refuse to open the database there.
  *
  * @author Fumihiko Shiroyama
  */
@@ -14,20 +24,43 @@ public class DatabaseProvider {
   private static final String DB_NAME = "github_db";
 
   public AppDatabase createDatabase(@NonNull Context context) {
-    return Room.databaseBuilder(context.getApplicationContext(),
-        AppDatabase.class, DB_NAME)
-        .allowMainThreadQueries()
+    return configure(Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, DB_NAME))
+        .openHelperFactory(new WalOpenHelperFactory(BuildConfig.DEBUG))
         .build();
   }
 
+  /**
+   * Adds what every {@link AppDatabase} needs wherever it is stored: the full-text search table and the migrations
+   */
+  @NonNull
+  public RoomDatabase.Builder<AppDatabase> configure(@NonNull RoomDatabase.Builder<AppDatabase> builder) {
+    return builder
+        .addCallback(RepositoryFtsTable.CALLBACK)
+        .addMigrations(Migrations.ALL);
+  }
+
   public static class Factory {
     private static AppDatabase instance;
 
+    private static ExecutorService writeExecutor;
+
     public static synchronized AppDatabase getInstance(@NonNull Context context) {
       if (instance == null) {
         instance = new DatabaseProvider().createDatabase(context);
       }
       return instance;
     }
+
+    /**
+     * Single thread every write to {@link AppDatabase} goes through, so writers queue up in order
+     * instead of contending for the write lock while readers go on concurrently
+     */
+    @NonNull
+    public static synchronized ExecutorService getWriteExecutor() {
+      if (writeExecutor == null) {
+        writeExecutor = Executors.newSingleThreadExecutor();
+      }
+      return writeExecutor;
+    }
   }
 }
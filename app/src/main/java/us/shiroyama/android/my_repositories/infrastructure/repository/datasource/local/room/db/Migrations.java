@@ -0,0 +1,67 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.migration.Migration;
+import android.support.annotation.NonNull;
+
+/**
+ * Schema {@link Migration}s of {@link AppDatabase}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class Migrations {
+  /**
+   * Adds <code>account_sync</code> table
+   */
+  static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase database) {
+      database.execSQL("CREATE TABLE IF NOT EXISTS `account_sync` (`login` TEXT NOT NULL, `etag` TEXT, `last_modified` TEXT, PRIMARY KEY(`login`))");
+    }
+  };
+
+  /**
+   * Adds <code>account_sync.last_synced_at</code>
+   */
+  static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase database) {
+      database.execSQL("ALTER TABLE `account_sync` ADD COLUMN `last_synced_at` INTEGER NOT NULL DEFAULT 0");
+    }
+  };
+
+  /**
+   * Replaces the <code>repository.account_id</code> index with <code>(account_id, updated_at, id)</code>,
+   * whose prefix serves lookups by account as before.
+   * SQLite walks it backwards for <code>ORDER BY updated_at DESC, id DESC</code>.
+   */
+  static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase database) {
+      database.execSQL("DROP INDEX IF EXISTS `index_repository_account_id`");
+      database.execSQL("CREATE INDEX IF NOT EXISTS `index_repository_account_id_updated_at_id` ON `repository` (`account_id`, `updated_at`, `id`)");
+    }
+  };
+
+  /**
+   * Adds {@link RepositoryFtsTable} and indexes the repositories stored so far
+   */
+  static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase database) {
+      database.execSQL(RepositoryFtsTable.CREATE);
+      database.execSQL(RepositoryFtsTable.POPULATE);
+    }
+  };
+
+  static final Migration[] ALL = {
+      MIGRATION_1_2,
+      MIGRATION_2_3,
+      MIGRATION_3_4,
+      MIGRATION_4_5
+  };
+
+  private Migrations() {
+  }
+}
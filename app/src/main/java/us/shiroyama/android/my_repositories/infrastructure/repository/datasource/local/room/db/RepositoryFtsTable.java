@@ -0,0 +1,105 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.RoomDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * FTS4 table indexing names and descriptions of the <code>repository</code> table
+ * <p>
+ * Room 1.0 knows nothing about virtual tables, so this table is created by {@link #CALLBACK} and {@link Migrations},
+ * and kept in sync by the transactions of the repository DAO rather than by triggers,
+ * because a row replaced on conflict does not fire delete triggers.
+ * The <code>docid</code> of a row is the repository id.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public final class RepositoryFtsTable {
+  public static final String TABLE = "repository_fts";
+
+  static final String CREATE = "CREATE VIRTUAL TABLE IF NOT EXISTS `" + TABLE + "` USING fts4(`name`, `description`)";
+
+  static final String POPULATE = "INSERT INTO `" + TABLE + "` (docid, `name`, `description`) " +
+      "SELECT `id`, `name`, `description` FROM `repository`";
+
+  public static final String INSERT = "INSERT INTO `" + TABLE + "` (docid, `name`, `description`) VALUES (?, ?, ?)";
+
+  public static final String DELETE = "DELETE FROM `" + TABLE + "` WHERE docid = ?";
+
+  /**
+   * Selects <code>docid</code> and the <code>pcx</code> matchinfo blob of every match, to be ranked by {@link #rank(byte[])}
+   */
+  public static final String MATCH = "SELECT docid, matchinfo(`" + TABLE + "`, 'pcx') FROM `" + TABLE + "` WHERE `" + TABLE + "` MATCH ?";
+
+  /**
+   * a hit in the name counts as much as this many hits in the description
+   */
+  private static final double NAME_WEIGHT = 4.0;
+
+  private static final double[] COLUMN_WEIGHTS = {NAME_WEIGHT, 1.0};
+
+  /**
+   * Creates the table for a new database
+   */
+  public static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+    @Override
+    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+      db.execSQL(CREATE);
+    }
+  };
+
+  private RepositoryFtsTable() {
+  }
+
+  /**
+   * Turns user input into a MATCH expression of prefix terms which must all match,
+   * so that operators and quotes typed by the user are never interpreted
+   *
+   * @return expression, or null if the input has no term
+   */
+  @Nullable
+  public static String toMatchQuery(@NonNull String query) {
+    StringBuilder builder = new StringBuilder();
+    for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (term.isEmpty()) {
+        continue;
+      }
+      if (builder.length() > 0) {
+        builder.append(' ');
+      }
+      builder.append(term).append('*');
+    }
+    return builder.length() == 0 ? null : builder.toString();
+  }
+
+  /**
+   * Scores a match by the share of each term's hits that falls on the row, weighting the name over the description.
+   * Rare terms thus count more than common ones, without a custom SQL function.
+   *
+   * @param matchinfo <code>matchinfo(..., 'pcx')</code> of the row
+   */
+  public static double rank(@NonNull byte[] matchinfo) {
+    ByteBuffer buffer = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder());
+    int phrases = buffer.getInt(0);
+    int columns = buffer.getInt(4);
+    double score = 0.0;
+    for (int phrase = 0; phrase < phrases; phrase++) {
+      for (int column = 0; column < columns; column++) {
+        int offset = 4 * (2 + 3 * (phrase * columns + column));
+        long hitsInRow = buffer.getInt(offset) & 0xffffffffL;
+        long hitsInAllRows = buffer.getInt(offset + 4) & 0xffffffffL;
+        if (hitsInRow > 0 && hitsInAllRows > 0) {
+          double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+          score += weight * hitsInRow / hitsInAllRows;
+        }
+      }
+    }
+    return score;
+  }
+}
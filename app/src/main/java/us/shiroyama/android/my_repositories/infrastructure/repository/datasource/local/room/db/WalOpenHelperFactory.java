@@ -0,0 +1,87 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+/**
+ * {@link SupportSQLiteOpenHelper.Factory} opening databases in write-ahead-log mode
+ * <p>
+ * In WAL mode readers see the last committed state and do not wait for a writer,
+ * and the framework keeps a pool of read connections next to the single write connection.
+ * Optionally fails fast when a database is opened on the main thread, which also covers
+ * access through {@link android.arch.persistence.room.RoomDatabase#getOpenHelper()} that Room does not check.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class WalOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+  @NonNull
+  private final SupportSQLiteOpenHelper.Factory delegate;
+
+  private final boolean guardMainThread;
+
+  public WalOpenHelperFactory(boolean guardMainThread) {
+    this(new FrameworkSQLiteOpenHelperFactory(), guardMainThread);
+  }
+
+  public WalOpenHelperFactory(@NonNull SupportSQLiteOpenHelper.Factory delegate, boolean guardMainThread) {
+    this.delegate = delegate;
+    this.guardMainThread = guardMainThread;
+  }
+
+  @Override
+  public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuration) {
+    SupportSQLiteOpenHelper openHelper = delegate.create(configuration);
+    // ignored for in-memory databases
+    openHelper.setWriteAheadLoggingEnabled(true);
+    return guardMainThread ? new MainThreadGuard(openHelper) : openHelper;
+  }
+
+  /**
+   * Throws {@link IllegalStateException} when a database is obtained on the main thread
+   */
+  private static class MainThreadGuard implements SupportSQLiteOpenHelper {
+    @NonNull
+    private final SupportSQLiteOpenHelper delegate;
+
+    MainThreadGuard(@NonNull SupportSQLiteOpenHelper delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String getDatabaseName() {
+      return delegate.getDatabaseName();
+    }
+
+    @Override
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+      delegate.setWriteAheadLoggingEnabled(enabled);
+    }
+
+    @Override
+    public SupportSQLiteDatabase getWritableDatabase() {
+      checkNotMainThread();
+      return delegate.getWritableDatabase();
+    }
+
+    @Override
+    public SupportSQLiteDatabase getReadableDatabase() {
+      checkNotMainThread();
+      return delegate.getReadableDatabase();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+
+    private void checkNotMainThread() {
+      if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
+        throw new IllegalStateException("database accessed on the main thread: " + getDatabaseName());
+      }
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows of the <code>repository</code> and <code>account</code> tables decoded from a single response
+ * <p>
+ * Each owner appears once in {@link #getAccounts()} however many repositories refer to it.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryRows {
+  private static final RepositoryRows EMPTY = new RepositoryRows(Collections.emptyList(), Collections.emptyList());
+
+  @NonNull
+  private final List<RoomRepositoryEntity> repositories;
+
+  @NonNull
+  private final List<RoomAccountEntity> accounts;
+
+  public RepositoryRows(@NonNull List<RoomRepositoryEntity> repositories, @NonNull List<RoomAccountEntity> accounts) {
+    this.repositories = repositories;
+    this.accounts = accounts;
+  }
+
+  @NonNull
+  public static RepositoryRows empty() {
+    return EMPTY;
+  }
+
+  @NonNull
+  public List<RoomRepositoryEntity> getRepositories() {
+    return repositories;
+  }
+
+  /**
+   * @return distinct owners of {@link #getRepositories()}
+   */
+  @NonNull
+  public List<RoomAccountEntity> getAccounts() {
+    return accounts;
+  }
+
+  public boolean isEmpty() {
+    return repositories.isEmpty();
+  }
+}
@@ -0,0 +1,39 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.ZonedDateTime;
+
+/**
+ * POJO holding just enough of a {@link RoomRepositoryEntity} row to tell whether it has changed
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryVersion {
+  @ColumnInfo(name = "id")
+  public long id;
+
+  @ColumnInfo(name = "updated_at")
+  public ZonedDateTime updatedAt;
+
+  @ColumnInfo(name = "pushed_at")
+  public ZonedDateTime pushedAt;
+
+  /**
+   * GitHub bumps <code>updated_at</code> on any metadata change and <code>pushed_at</code> on any push,
+   * so rows with the same instants are considered unchanged.
+   */
+  public boolean isSameVersionAs(@NonNull RoomRepositoryEntity repository) {
+    return isSameInstant(updatedAt, repository.getUpdatedAt()) && isSameInstant(pushedAt, repository.getPushedAt());
+  }
+
+  private static boolean isSameInstant(@Nullable ZonedDateTime left, @Nullable ZonedDateTime right) {
+    if (left == null || right == null) {
+      return left == right;
+    }
+    return left.toEpochSecond() == right.toEpochSecond();
+  }
+}
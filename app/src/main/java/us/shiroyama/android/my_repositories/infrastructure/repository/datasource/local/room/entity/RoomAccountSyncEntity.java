@@ -0,0 +1,56 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+/**
+ * Room Entity for the HTTP validators and the time of the last repository list sync of an account
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+@Entity(tableName = "account_sync")
+public class RoomAccountSyncEntity {
+  @PrimaryKey
+  @NonNull
+  @ColumnInfo(name = "login")
+  private final String login;
+
+  @ColumnInfo(name = "etag")
+  private final String etag;
+
+  @ColumnInfo(name = "last_modified")
+  private final String lastModified;
+
+  /**
+   * epoch millis when the list was last downloaded or confirmed unchanged
+   */
+  @ColumnInfo(name = "last_synced_at")
+  private final long lastSyncedAt;
+
+  public RoomAccountSyncEntity(@NonNull String login, String etag, String lastModified, long lastSyncedAt) {
+    this.login = login;
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.lastSyncedAt = lastSyncedAt;
+  }
+
+  @NonNull
+  public String getLogin() {
+    return login;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  public long getLastSyncedAt() {
+    return lastSyncedAt;
+  }
+}
@@ -9,13 +9,16 @@ import org.threeten.bp.ZonedDateTime;
 
 /**
  * Room Entity for GitHub Repository
+ * <p>
+ * Indexed by <code>(account_id, updated_at, id)</code>, so the repositories of an account are read
+ * newest first straight from the index instead of being sorted for every query.
  *
  * @author Fumihiko Shiroyama
  */
 
 @Entity(
     tableName = "repository",
-    indices = {@Index(value = {"account_id"})}
+    indices = {@Index(value = {"account_id", "updated_at", "id"})}
 )
 public class RoomRepositoryEntity {
   @PrimaryKey
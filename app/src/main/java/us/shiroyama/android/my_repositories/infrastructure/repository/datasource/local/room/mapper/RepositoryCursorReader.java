@@ -0,0 +1,120 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.mapper;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.ZonedDateTime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.shiroyama.android.my_repositories.common.Singleton;
+import us.shiroyama.android.my_repositories.infrastructure.entity.AccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DateConverter;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
+
+/**
+ * Reads {@link RepositoryEntity}s straight from a {@link Cursor} over the columns of {@link RepoWithAccount}
+ * <p>
+ * Skips the intermediate Room entities that {@link RepositoryEntityMapper#convertList(List)} copies from.
+ * Column indices are resolved once per cursor, and every repository of an owner shares one {@link AccountEntity}.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryCursorReader {
+  /**
+   * Reads every remaining row, leaving the cursor open
+   */
+  @NonNull
+  public List<RepositoryEntity> read(@NonNull Cursor cursor) {
+    Columns columns = new Columns(cursor);
+    List<RepositoryEntity> repositories = new ArrayList<>(Math.max(cursor.getCount(), 0));
+    Map<Long, AccountEntity> owners = new HashMap<>();
+    AccountEntity lastOwner = null;
+    while (cursor.moveToNext()) {
+      long ownerId = cursor.getLong(columns.accountId);
+      // rows of one account come in a row, so the map is rarely consulted
+      AccountEntity owner = lastOwner != null && lastOwner.getId() == ownerId ? lastOwner : owners.get(ownerId);
+      if (owner == null) {
+        owner = new AccountEntity(
+            ownerId,
+            cursor.getString(columns.accountLogin),
+            cursor.getString(columns.accountAvatarUrl),
+            cursor.getString(columns.accountUrl)
+        );
+        owners.put(ownerId, owner);
+      }
+      lastOwner = owner;
+      repositories.add(new RepositoryEntity(
+          cursor.getLong(columns.id),
+          cursor.getString(columns.name),
+          cursor.getString(columns.fullName),
+          cursor.getString(columns.htmlUrl),
+          cursor.getInt(columns.isPrivate) != 0,
+          cursor.getString(columns.description),
+          owner,
+          getDate(cursor, columns.createdAt),
+          getDate(cursor, columns.updatedAt),
+          getDate(cursor, columns.pushedAt)
+      ));
+    }
+    return repositories;
+  }
+
+  @Nullable
+  private static ZonedDateTime getDate(@NonNull Cursor cursor, int column) {
+    return cursor.isNull(column) ? null : DateConverter.fromTimeToDate(cursor.getLong(column));
+  }
+
+  /**
+   * Column indices of a cursor
+   */
+  private static class Columns {
+    final int id;
+    final int name;
+    final int fullName;
+    final int htmlUrl;
+    final int isPrivate;
+    final int description;
+    final int createdAt;
+    final int updatedAt;
+    final int pushedAt;
+    final int accountId;
+    final int accountLogin;
+    final int accountAvatarUrl;
+    final int accountUrl;
+
+    Columns(@NonNull Cursor cursor) {
+      id = cursor.getColumnIndexOrThrow("repo_id");
+      name = cursor.getColumnIndexOrThrow("repo_name");
+      fullName = cursor.getColumnIndexOrThrow("repo_full_name");
+      htmlUrl = cursor.getColumnIndexOrThrow("repo_html_url");
+      isPrivate = cursor.getColumnIndexOrThrow("repo_is_private");
+      description = cursor.getColumnIndexOrThrow("repo_description");
+      createdAt = cursor.getColumnIndexOrThrow("repo_created_at");
+      updatedAt = cursor.getColumnIndexOrThrow("repo_updated_at");
+      pushedAt = cursor.getColumnIndexOrThrow("repo_pushed_at");
+      accountId = cursor.getColumnIndexOrThrow("account_id");
+      accountLogin = cursor.getColumnIndexOrThrow("account_login");
+      accountAvatarUrl = cursor.getColumnIndexOrThrow("account_avatar_url");
+      accountUrl = cursor.getColumnIndexOrThrow("account_url");
+    }
+  }
+
+  public enum Factory implements Singleton<RepositoryCursorReader> {
+    INSTANCE;
+
+    private final RepositoryCursorReader instance = new RepositoryCursorReader();
+
+    @NonNull
+    @Override
+    public RepositoryCursorReader get() {
+      return instance;
+    }
+  }
+}
@@ -4,11 +4,16 @@ import android.support.annotation.NonNull;
 
 import com.annimon.stream.Stream;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import us.shiroyama.android.my_repositories.common.Singleton;
+import us.shiroyama.android.my_repositories.infrastructure.entity.AccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
 
@@ -28,6 +33,11 @@ public class RepositoryEntityMapper {
 
   @NonNull
   public RepositoryEntity convert(@NonNull RoomRepositoryEntity roomRepositoryEntity, @NonNull RoomAccountEntity roomAccountEntity) {
+    return convert(roomRepositoryEntity, accountEntityMapper.convert(roomAccountEntity));
+  }
+
+  @NonNull
+  private RepositoryEntity convert(@NonNull RoomRepositoryEntity roomRepositoryEntity, @NonNull AccountEntity owner) {
     return new RepositoryEntity(
         roomRepositoryEntity.getId(),
         roomRepositoryEntity.getName(),
@@ -35,7 +45,7 @@ public class RepositoryEntityMapper {
         roomRepositoryEntity.getHtmlUrl(),
         roomRepositoryEntity.isPrivate(),
         roomRepositoryEntity.getDescription(),
-        accountEntityMapper.convert(roomAccountEntity),
+        owner,
         roomRepositoryEntity.getCreatedAt(),
         roomRepositoryEntity.getUpdatedAt(),
         roomRepositoryEntity.getPushedAt()
@@ -53,6 +63,22 @@ public class RepositoryEntityMapper {
         .toList();
   }
 
+  /**
+   * Converts each account of the rows once and shares it between the repositories it owns
+   */
+  @NonNull
+  public List<RepositoryEntity> convertRows(@NonNull RepositoryRows rows) {
+    Map<Long, AccountEntity> owners = new HashMap<>(rows.getAccounts().size());
+    for (RoomAccountEntity account : rows.getAccounts()) {
+      owners.put(account.getId(), accountEntityMapper.convert(account));
+    }
+    List<RepositoryEntity> repositories = new ArrayList<>(rows.getRepositories().size());
+    for (RoomRepositoryEntity repository : rows.getRepositories()) {
+      repositories.add(convert(repository, owners.get(repository.getAccountId())));
+    }
+    return repositories;
+  }
+
   public enum Factory implements Singleton<RepositoryEntityMapper> {
     INSTANCE;
 
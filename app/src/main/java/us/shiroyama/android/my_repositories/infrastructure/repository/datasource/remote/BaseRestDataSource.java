@@ -6,10 +6,14 @@ import com.google.gson.Gson;
 
 import java.io.IOException;
 
+import okhttp3.Headers;
 import okhttp3.ResponseBody;
 import retrofit2.Response;
+import us.shiroyama.android.my_repositories.common.RateLimitBudget;
 import us.shiroyama.android.my_repositories.infrastructure.entity.GitHubErrorEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.SecondaryRateLimitException;
 
 /**
  * Base REST Data Source
@@ -18,13 +22,43 @@ import us.shiroyama.android.my_repositories.infrastructure.exception.ApiExceptio
  */
 
 public class BaseRestDataSource<T> {
+  private static final int HTTP_FORBIDDEN = 403;
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private static final String HEADER_RETRY_AFTER = "Retry-After";
+
   @NonNull
   private final Gson gson;
 
+  @NonNull
+  private final RateLimitBudget rateLimitBudget;
+
   public BaseRestDataSource(@NonNull Gson gson) {
+    this(gson, RateLimitBudget.Factory.INSTANCE.get());
+  }
+
+  public BaseRestDataSource(@NonNull Gson gson, @NonNull RateLimitBudget rateLimitBudget) {
     this.gson = gson;
+    this.rateLimitBudget = rateLimitBudget;
   }
 
+  /**
+   * Call before sending a request
+   *
+   * @throws RateLimitException when the request would be rejected anyway
+   */
+  public void checkRateLimit() throws RateLimitException {
+    if (rateLimitBudget.isExhausted()) {
+      throw new RateLimitException(rateLimitBudget.getResetAtMillis());
+    }
+  }
+
+  /**
+   * @throws RateLimitException          on <code>403</code> with no remaining rate limit
+   * @throws SecondaryRateLimitException on <code>403</code> or <code>429</code> with <code>Retry-After</code>
+   * @throws ApiException                with the status code otherwise
+   */
   public T stripResult(Response<T> response) throws IOException, ApiException {
     if (response.isSuccessful()) {
       T body = response.body();
@@ -32,11 +66,20 @@ public class BaseRestDataSource<T> {
       return body;
     }
     try (ResponseBody responseBody = response.errorBody()) {
-      if (responseBody == null) {
-        throw new ApiException();
+      GitHubErrorEntity gitHubErrorEntity = responseBody == null
+          ? null
+          : gson.fromJson(responseBody.charStream(), GitHubErrorEntity.class);
+      Headers headers = response.headers();
+      int code = response.code();
+      String retryAfter = headers.get(HEADER_RETRY_AFTER);
+      if ((code == HTTP_FORBIDDEN || code == HTTP_TOO_MANY_REQUESTS) && retryAfter != null) {
+        long retryAfterMillis = RateLimitBudget.parseSecondsToMillis(retryAfter);
+        throw new SecondaryRateLimitException(System.currentTimeMillis() + retryAfterMillis, gitHubErrorEntity, code);
+      }
+      if (code == HTTP_FORBIDDEN && "0".equals(headers.get(RateLimitBudget.HEADER_REMAINING))) {
+        throw new RateLimitException(RateLimitBudget.parseSecondsToMillis(headers.get(RateLimitBudget.HEADER_RESET)), gitHubErrorEntity, code);
       }
-      GitHubErrorEntity gitHubErrorEntity = gson.fromJson(responseBody.charStream(), GitHubErrorEntity.class);
-      throw new ApiException(gitHubErrorEntity);
+      throw new ApiException(code, gitHubErrorEntity);
     }
   }
 }
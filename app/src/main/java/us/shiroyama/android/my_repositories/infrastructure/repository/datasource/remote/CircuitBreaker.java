@@ -0,0 +1,163 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Circuit breaker over the outcomes of the last <code>windowSize</code> calls
+ * <p>
+ * {@link State#CLOSED} lets every call through until the failure rate of the window reaches the threshold.
+ * {@link State#OPEN} then rejects calls for <code>openMillis</code>, after which {@link State#HALF_OPEN}
+ * lets a single trial call through: its success closes the circuit and its failure opens it again.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class CircuitBreaker {
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  public static final int DEFAULT_WINDOW_SIZE = 10;
+
+  public static final int DEFAULT_MIN_CALLS = 5;
+
+  public static final float DEFAULT_FAILURE_RATE = 0.5f;
+
+  public static final long DEFAULT_OPEN_MILLIS = 30_000L;
+
+  @NonNull
+  private final boolean[] window;
+
+  private final int minCalls;
+
+  private final float failureRate;
+
+  private final long openMillis;
+
+  @NonNull
+  private State state = State.CLOSED;
+
+  private int next;
+
+  private int recorded;
+
+  private int failures;
+
+  private long openedAtMillis;
+
+  private boolean trialInFlight;
+
+  public CircuitBreaker() {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_FAILURE_RATE, DEFAULT_OPEN_MILLIS);
+  }
+
+  /**
+   * @param minCalls    calls recorded before the failure rate is taken into account
+   * @param failureRate e.g. <code>0.5f</code> to open when half of the window has failed
+   */
+  public CircuitBreaker(int windowSize, int minCalls, float failureRate, long openMillis) {
+    this.window = new boolean[windowSize];
+    this.minCalls = minCalls;
+    this.failureRate = failureRate;
+    this.openMillis = openMillis;
+  }
+
+  /**
+   * @return true if the call may proceed, in which case exactly one of
+   * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()} must follow
+   */
+  public synchronized boolean tryAcquire() {
+    switch (state) {
+      case OPEN:
+        if (currentTimeMillis() - openedAtMillis < openMillis) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        trialInFlight = true;
+        return true;
+      case HALF_OPEN:
+        if (trialInFlight) {
+          return false;
+        }
+        trialInFlight = true;
+        return true;
+      default:
+        return true;
+    }
+  }
+
+  public synchronized void onSuccess() {
+    if (state == State.HALF_OPEN) {
+      close();
+      return;
+    }
+    record(false);
+  }
+
+  public synchronized void onFailure() {
+    if (state == State.HALF_OPEN) {
+      open();
+      return;
+    }
+    record(true);
+    if (recorded >= minCalls && failures >= recorded * failureRate) {
+      open();
+    }
+  }
+
+  /**
+   * For calls which tell nothing about the backend, e.g. cancelled ones
+   */
+  public synchronized void onIgnored() {
+    if (state == State.HALF_OPEN) {
+      trialInFlight = false;
+    }
+  }
+
+  @NonNull
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * @return epoch millis at which an open circuit lets a trial call through
+   */
+  public synchronized long getRetryAtMillis() {
+    return openedAtMillis + openMillis;
+  }
+
+  long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private void record(boolean failure) {
+    if (recorded == window.length) {
+      if (window[next]) {
+        failures--;
+      }
+    } else {
+      recorded++;
+    }
+    window[next] = failure;
+    if (failure) {
+      failures++;
+    }
+    next = (next + 1) % window.length;
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAtMillis = currentTimeMillis();
+    trialInFlight = false;
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    trialInFlight = false;
+    next = 0;
+    recorded = 0;
+    failures = 0;
+  }
+}
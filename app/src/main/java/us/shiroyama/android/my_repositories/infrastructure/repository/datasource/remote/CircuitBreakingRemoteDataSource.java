@@ -0,0 +1,94 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.ZonedDateTime;
+
+import java.io.IOException;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.common.CancellationToken;
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.CircuitOpenException;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+
+/**
+ * {@link GitHubRemoteDataSource} decorator which fails fast with {@link CircuitOpenException} while the API is unhealthy
+ * <p>
+ * Only transient failures in terms of {@link RetryPolicy} count against the backend.
+ * Other errors such as <code>404</code> prove it is answering, and cancelled calls are ignored.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class CircuitBreakingRemoteDataSource implements GitHubRemoteDataSource {
+  @NonNull
+  private final GitHubRemoteDataSource delegate;
+
+  @NonNull
+  private final CircuitBreaker circuitBreaker;
+
+  public CircuitBreakingRemoteDataSource(@NonNull GitHubRemoteDataSource delegate) {
+    this(delegate, new CircuitBreaker());
+  }
+
+  public CircuitBreakingRemoteDataSource(@NonNull GitHubRemoteDataSource delegate, @NonNull CircuitBreaker circuitBreaker) {
+    this.delegate = delegate;
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @NonNull
+  @Override
+  public List<RepositoryEntity> getUserRepositories(@NonNull String account) throws IOException, ApiException {
+    return guard(() -> delegate.getUserRepositories(account));
+  }
+
+  @NonNull
+  @Override
+  public RemoteRepositories getUserRepositoriesPreferringCache(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    return guard(() -> delegate.getUserRepositoriesPreferringCache(account, options));
+  }
+
+  @NonNull
+  @Override
+  public RemoteRepositories getUserRepositoriesIfModified(@NonNull String account, @Nullable String etag, @Nullable String lastModified, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    return guard(() -> delegate.getUserRepositoriesIfModified(account, etag, lastModified, options));
+  }
+
+  @NonNull
+  @Override
+  public RepositoryRows getUserRepositoriesUpdatedAfter(@NonNull String account, @NonNull ZonedDateTime since, int perPage) throws IOException, ApiException {
+    return guard(() -> delegate.getUserRepositoriesUpdatedAfter(account, since, perPage));
+  }
+
+  @NonNull
+  private <T> T guard(@NonNull RemoteCall<T> call) throws IOException, ApiException {
+    if (!circuitBreaker.tryAcquire()) {
+      throw new CircuitOpenException(circuitBreaker.getRetryAtMillis());
+    }
+    T result;
+    try {
+      result = call.call();
+    } catch (IOException | ApiException e) {
+      if (CancellationToken.current().isCancelled()) {
+        circuitBreaker.onIgnored();
+      } else if (RetryPolicy.isTransient(e)) {
+        circuitBreaker.onFailure();
+      } else {
+        circuitBreaker.onSuccess();
+      }
+      throw e;
+    } catch (RuntimeException e) {
+      circuitBreaker.onIgnored();
+      throw e;
+    }
+    circuitBreaker.onSuccess();
+    return result;
+  }
+
+  private interface RemoteCall<T> {
+    T call() throws IOException, ApiException;
+  }
+}
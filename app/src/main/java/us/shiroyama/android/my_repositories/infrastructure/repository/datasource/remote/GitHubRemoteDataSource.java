@@ -1,12 +1,16 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.threeten.bp.ZonedDateTime;
 
 import java.io.IOException;
 import java.util.List;
 
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
 
 /**
  * Remote Data Source Interface for GitHub
@@ -15,6 +19,38 @@ import us.shiroyama.android.my_repositories.infrastructure.exception.ApiExceptio
  */
 
 public interface GitHubRemoteDataSource {
+  /**
+   * Fetches every page in {@link RepositoryListOptions#DEFAULT}
+   */
   @NonNull
   List<RepositoryEntity> getUserRepositories(@NonNull String account) throws IOException, ApiException;
+
+  /**
+   * Fetches every page, letting the HTTP cache answer within its <code>max-age</code>,
+   * or within <code>max-stale</code> when offline
+   *
+   * @param options page size and the order GitHub sorts the repositories in
+   */
+  @NonNull
+  RemoteRepositories getUserRepositoriesPreferringCache(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException;
+
+  /**
+   * Conditional variant of {@link #getUserRepositoriesPreferringCache(String, RepositoryListOptions)}, which always goes to the network
+   * <p>
+   * Validators only match a response for the same options.
+   *
+   * @param etag         <code>ETag</code> of the previous response, sent as <code>If-None-Match</code>
+   * @param lastModified <code>Last-Modified</code> of the previous response, sent as <code>If-Modified-Since</code>
+   */
+  @NonNull
+  RemoteRepositories getUserRepositoriesIfModified(@NonNull String account, @Nullable String etag, @Nullable String lastModified, @NonNull RepositoryListOptions options) throws IOException, ApiException;
+
+  /**
+   * Fetches pages one by one in {@link RepositoryListOptions#DEFAULT} order and stops at the first repository updated before <code>since</code>
+   *
+   * @param perPage page size, see {@link RepositoryListOptions#getPerPage()}
+   * @return rows of repositories updated at or after <code>since</code>, newest first
+   */
+  @NonNull
+  RepositoryRows getUserRepositoriesUpdatedAfter(@NonNull String account, @NonNull ZonedDateTime since, int perPage) throws IOException, ApiException;
 }
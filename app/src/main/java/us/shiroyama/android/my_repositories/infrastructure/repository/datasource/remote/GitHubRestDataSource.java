@@ -1,66 +1,403 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.google.gson.Gson;
 
+import org.threeten.bp.ZonedDateTime;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import okhttp3.Headers;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
 import retrofit2.Response;
+import us.shiroyama.android.my_repositories.common.CancellationToken;
+import us.shiroyama.android.my_repositories.common.HttpCachePolicy;
+import us.shiroyama.android.my_repositories.common.RateLimitBudget;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.mapper.RepositoryEntityMapper;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.service.GitHubService;
 
 /**
  * Remote Data Source for GitHub
+ * <p>
+ * Responses are decoded into {@link RepositoryRows}, ready to be stored without another conversion.
  *
  * @author Fumihiko Shiroyama
  */
 
-public class GitHubRestDataSource extends BaseRestDataSource<List<RepositoryEntity>> implements GitHubRemoteDataSource {
+public class GitHubRestDataSource extends BaseRestDataSource<RepositoryRows> implements GitHubRemoteDataSource {
+  private static final int FIRST_PAGE = 1;
+
+  private static final int MAX_PARALLEL_PAGES = 4;
+
+  private static final int HTTP_NOT_MODIFIED = 304;
+
+  private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
+  private static final String HEADER_ETAG = "ETag";
+
+  private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
   @NonNull
   private final GitHubService gitHubService;
 
-  public GitHubRestDataSource(@NonNull Gson gson, @NonNull GitHubService gitHubService) {
-    super(gson);
-    this.gitHubService = gitHubService;
+  @NonNull
+  private final ExecutorService pageExecutor;
+
+  @NonNull
+  private final RepositoryEntityMapper repositoryEntityMapper;
+
+  @Nullable
+  private final RequestHedger requestHedger;
+
+  @Nullable
+  private final RequestRetrier requestRetrier;
+
+  private GitHubRestDataSource(@NonNull Builder builder) {
+    super(builder.gson, builder.rateLimitBudget);
+    this.gitHubService = builder.gitHubService;
+    this.pageExecutor = builder.pageExecutor == null ? newPageExecutor() : builder.pageExecutor;
+    this.repositoryEntityMapper = builder.repositoryEntityMapper;
+    this.requestHedger = builder.requestHedger;
+    this.requestRetrier = builder.requestRetrier;
   }
 
   @NonNull
   @Override
   public List<RepositoryEntity> getUserRepositories(@NonNull String account) throws IOException, ApiException {
-    Response<List<RepositoryEntity>> response = gitHubService.getUserRepositories(
+    return repositoryEntityMapper.convertRows(getUserRepositoriesPreferringCache(account, RepositoryListOptions.DEFAULT).getRows());
+  }
+
+  @NonNull
+  @Override
+  public RemoteRepositories getUserRepositoriesPreferringCache(@NonNull String account, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    return fetchAllPages(account, null, null, null, options);
+  }
+
+  @NonNull
+  @Override
+  public RemoteRepositories getUserRepositoriesIfModified(@NonNull String account, @Nullable String etag, @Nullable String lastModified, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    return fetchAllPages(account, etag, lastModified, HttpCachePolicy.FORCE_NETWORK, options);
+  }
+
+  /**
+   * Fetches the first page, learns the last page number from its <code>Link</code> header
+   * and then fetches the remaining pages concurrently on {@link #pageExecutor}.
+   * <p>
+   * The validators are only sent with the first page. When the list is sorted by <code>updated</code>,
+   * any change to a repository moves it to the first page and changes its <code>ETag</code>.
+   * A repository deleted further down the list is picked up the next time the first page changes.
+   * Other orders only notice changes on the first page, so they had better be revalidated in the default order.
+   * <p>
+   * Cancelling the {@link CancellationToken} of the calling thread aborts every page call in flight.
+   */
+  @NonNull
+  private RemoteRepositories fetchAllPages(@NonNull String account, @Nullable String etag, @Nullable String lastModified, @Nullable String cacheControl, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    CancellationToken token = CancellationToken.current();
+    Response<RepositoryRows> firstResponse = fetchPageOrThrow(token, account, FIRST_PAGE, etag, lastModified, cacheControl, options);
+    if (firstResponse.code() == HTTP_NOT_MODIFIED) {
+      return RemoteRepositories.notModified(etag, lastModified);
+    }
+    RepositoryRows firstPage = stripResult(firstResponse);
+    Headers headers = firstResponse.headers();
+    String newEtag = headers.get(HEADER_ETAG);
+    String newLastModified = headers.get(HEADER_LAST_MODIFIED);
+    int lastPage = LinkHeader.parse(headers.get(LinkHeader.HEADER)).getLastPage();
+    if (lastPage <= FIRST_PAGE) {
+      return RemoteRepositories.of(firstPage, newEtag, newLastModified);
+    }
+
+    List<Future<RepositoryRows>> futures = new ArrayList<>(lastPage - FIRST_PAGE);
+    for (int page = FIRST_PAGE + 1; page <= lastPage; page++) {
+      int target = page;
+      futures.add(pageExecutor.submit(() -> stripResult(fetchPageOrThrow(token, account, target, null, null, cacheControl, options))));
+    }
+
+    List<RepositoryRows> pages = new ArrayList<>(lastPage);
+    pages.add(firstPage);
+    try {
+      for (Future<RepositoryRows> future : futures) {
+        pages.add(await(future));
+      }
+    } finally {
+      for (Future<RepositoryRows> future : futures) {
+        future.cancel(true);
+      }
+    }
+    return RemoteRepositories.of(merge(pages, options), newEtag, newLastModified);
+  }
+
+  /**
+   * Relies on the <code>updated</code> descending order, so the walk ends at the first repository
+   * older than <code>since</code> and the remaining pages are never requested.
+   * <code>updated_at</code> only has second precision, so repositories updated at <code>since</code> itself are kept
+   * and deduplicated by the upsert.
+   */
+  @NonNull
+  @Override
+  public RepositoryRows getUserRepositoriesUpdatedAfter(@NonNull String account, @NonNull ZonedDateTime since, int perPage) throws IOException, ApiException {
+    CancellationToken token = CancellationToken.current();
+    RepositoryListOptions options = new RepositoryListOptions(RepositoryListOptions.Sort.UPDATED, RepositoryListOptions.Direction.DESC, perPage);
+    List<RepositoryRows> pages = new ArrayList<>();
+    int page = FIRST_PAGE;
+    while (page != LinkHeader.NO_PAGE) {
+      Response<RepositoryRows> response = fetchPageOrThrow(token, account, page, null, null, HttpCachePolicy.FORCE_NETWORK, options);
+      RepositoryRows rows = stripResult(response);
+      List<RoomRepositoryEntity> repositories = rows.getRepositories();
+      for (int i = 0; i < repositories.size(); i++) {
+        if (repositories.get(i).getUpdatedAt().isBefore(since)) {
+          pages.add(new RepositoryRows(repositories.subList(0, i), rows.getAccounts()));
+          return merge(pages, options);
+        }
+      }
+      pages.add(rows);
+      page = LinkHeader.parse(response.headers().get(LinkHeader.HEADER)).getNextPage();
+    }
+    return merge(pages, options);
+  }
+
+  /**
+   * {@link #fetchPage} failing with the {@link ApiException} of an unsuccessful response,
+   * so that {@link #requestRetrier} can retry this page alone
+   *
+   * @return a successful or <code>304 Not Modified</code> response
+   */
+  @NonNull
+  private Response<RepositoryRows> fetchPageOrThrow(@NonNull CancellationToken token, @NonNull String account, int page, @Nullable String etag, @Nullable String lastModified, @Nullable String cacheControl, @NonNull RepositoryListOptions options) throws IOException, ApiException {
+    RequestRetrier.Request<Response<RepositoryRows>> request = () -> {
+      Response<RepositoryRows> response = fetchPage(token, account, page, etag, lastModified, cacheControl, options);
+      if (!response.isSuccessful() && response.code() != HTTP_NOT_MODIFIED) {
+        // always throws for an unsuccessful response
+        stripResult(response);
+      }
+      return response;
+    };
+    return requestRetrier == null ? request.execute() : requestRetrier.execute(token, request);
+  }
+
+  /**
+   * Executes the call, cancelling it as soon as the token is cancelled so the connection is released right away
+   * <p>
+   * While the rate limit is exhausted nothing is sent to the network. A request which may be answered
+   * by the HTTP cache is still tried against the cache alone.
+   *
+   * @param token        passed explicitly since page calls may run on {@link #pageExecutor}
+   * @param cacheControl {@link HttpCachePolicy#FORCE_NETWORK} to bypass the HTTP cache, or null to let it answer
+   * @throws RateLimitException while the rate limit is exhausted, unless the HTTP cache has answered
+   */
+  @NonNull
+  private Response<RepositoryRows> fetchPage(@NonNull CancellationToken token, @NonNull String account, int page, @Nullable String etag, @Nullable String lastModified, @Nullable String cacheControl, @NonNull RepositoryListOptions options) throws IOException, RateLimitException {
+    token.throwIfCancelled();
+    RateLimitException rateLimited = null;
+    try {
+      checkRateLimit();
+    } catch (RateLimitException e) {
+      if (cacheControl != null) {
+        throw e;
+      }
+      rateLimited = e;
+    }
+    Call<RepositoryRows> call = gitHubService.getUserRepositories(
         account,
-        Sort.UPDATED.value,
-        Direction.DESC.value
-    ).execute();
-    return stripResult(response);
+        options.getSort().getValue(),
+        options.getDirection().getValue(),
+        page,
+        options.getPerPage(),
+        etag,
+        lastModified,
+        rateLimited == null ? cacheControl : HttpCachePolicy.ONLY_IF_CACHED
+    );
+    Response<RepositoryRows> response = execute(token, call);
+    if (rateLimited != null && response.code() == HTTP_GATEWAY_TIMEOUT) {
+      // not cached, and the network would reject it
+      ResponseBody errorBody = response.errorBody();
+      if (errorBody != null) {
+        errorBody.close();
+      }
+      throw rateLimited;
+    }
+    return response;
   }
 
-  private enum Sort {
-    CREATED("created"),
-    UPDATED("updated"),
-    PUSHED("pushed"),
-    FULL_NAME("full_name");
+  @NonNull
+  private Response<RepositoryRows> execute(@NonNull CancellationToken token, @NonNull Call<RepositoryRows> call) throws IOException {
+    if (requestHedger != null) {
+      return requestHedger.execute(token, call);
+    }
+    Runnable cancelCall = call::cancel;
+    token.register(cancelCall);
+    try {
+      return call.execute();
+    } finally {
+      token.unregister(cancelCall);
+    }
+  }
 
-    @NonNull
-    private final String value;
+  @NonNull
+  private RepositoryRows await(@NonNull Future<RepositoryRows> future) throws IOException, ApiException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while fetching pages");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof ApiException) {
+        throw (ApiException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
 
-    Sort(@NonNull String value) {
-      this.value = value;
+  /**
+   * Concatenates pages, drops repositories that moved across a page boundary while fetching
+   * and restores the requested order. Owners stay distinct across pages.
+   * Owners only referenced by the dropped part of a page are kept, which is harmless for an upsert.
+   */
+  @NonNull
+  private RepositoryRows merge(@NonNull List<RepositoryRows> pages, @NonNull RepositoryListOptions options) {
+    if (pages.size() == 1) {
+      return pages.get(0);
+    }
+    int size = 0;
+    for (RepositoryRows page : pages) {
+      size += page.getRepositories().size();
     }
+    List<RoomRepositoryEntity> merged = new ArrayList<>(size);
+    Set<Long> ids = new HashSet<>(size);
+    Map<Long, RoomAccountEntity> accounts = new LinkedHashMap<>();
+    for (RepositoryRows page : pages) {
+      for (RoomRepositoryEntity repository : page.getRepositories()) {
+        if (ids.add(repository.getId())) {
+          merged.add(repository);
+        }
+      }
+      for (RoomAccountEntity account : page.getAccounts()) {
+        if (!accounts.containsKey(account.getId())) {
+          accounts.put(account.getId(), account);
+        }
+      }
+    }
+    Collections.sort(merged, options.rowComparator());
+    return new RepositoryRows(merged, new ArrayList<>(accounts.values()));
   }
 
-  private enum Direction {
-    ASC("asc"),
-    DESC("desc");
+  /**
+   * Builder of {@link GitHubRestDataSource}, whose collaborators other than {@link Gson} and {@link GitHubService} are optional
+   */
+  public static class Builder {
+    @NonNull
+    private final Gson gson;
+
+    @NonNull
+    private final GitHubService gitHubService;
+
+    @Nullable
+    private ExecutorService pageExecutor;
 
     @NonNull
-    private final String value;
+    private RepositoryEntityMapper repositoryEntityMapper = RepositoryEntityMapper.Factory.INSTANCE.get();
 
-    Direction(@NonNull String value) {
-      this.value = value;
+    @NonNull
+    private RateLimitBudget rateLimitBudget = RateLimitBudget.Factory.INSTANCE.get();
+
+    @Nullable
+    private RequestHedger requestHedger;
+
+    @Nullable
+    private RequestRetrier requestRetrier;
+
+    public Builder(@NonNull Gson gson, @NonNull GitHubService gitHubService) {
+      this.gson = gson;
+      this.gitHubService = gitHubService;
     }
+
+    /**
+     * @param pageExecutor fetches the pages following the first one, a bounded pool by default
+     */
+    @NonNull
+    public Builder pageExecutor(@NonNull ExecutorService pageExecutor) {
+      this.pageExecutor = pageExecutor;
+      return this;
+    }
+
+    @NonNull
+    public Builder repositoryEntityMapper(@NonNull RepositoryEntityMapper repositoryEntityMapper) {
+      this.repositoryEntityMapper = repositoryEntityMapper;
+      return this;
+    }
+
+    /**
+     * @param rateLimitBudget checked before every request, the one updated by the HTTP client by default
+     */
+    @NonNull
+    public Builder rateLimitBudget(@NonNull RateLimitBudget rateLimitBudget) {
+      this.rateLimitBudget = rateLimitBudget;
+      return this;
+    }
+
+    /**
+     * @param requestHedger hedges every page call, which trades some extra requests for a shorter tail latency
+     */
+    @NonNull
+    public Builder requestHedger(@Nullable RequestHedger requestHedger) {
+      this.requestHedger = requestHedger;
+      return this;
+    }
+
+    /**
+     * @param requestRetrier retries transient failures of each page call on its own
+     */
+    @NonNull
+    public Builder requestRetrier(@Nullable RequestRetrier requestRetrier) {
+      this.requestRetrier = requestRetrier;
+      return this;
+    }
+
+    @NonNull
+    public GitHubRestDataSource build() {
+      return new GitHubRestDataSource(this);
+    }
+  }
+
+  @NonNull
+  private static ExecutorService newPageExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        MAX_PARALLEL_PAGES,
+        MAX_PARALLEL_PAGES,
+        30L,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>()
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 }
@@ -0,0 +1,73 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of {@link RequestHedger}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class HedgeMetrics {
+  private final AtomicLong calls = new AtomicLong();
+
+  private final AtomicLong hedges = new AtomicLong();
+
+  private final AtomicLong hedgesWon = new AtomicLong();
+
+  private final AtomicLong deniedHedges = new AtomicLong();
+
+  void onCall() {
+    calls.incrementAndGet();
+  }
+
+  void onHedge() {
+    hedges.incrementAndGet();
+  }
+
+  void onHedgeWon() {
+    hedgesWon.incrementAndGet();
+  }
+
+  void onHedgeDenied() {
+    deniedHedges.incrementAndGet();
+  }
+
+  /**
+   * @return calls made by callers, not counting hedges
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * @return second requests sent because the first one was slow
+   */
+  public long getHedges() {
+    return hedges.get();
+  }
+
+  /**
+   * @return hedges whose response was used
+   */
+  public long getHedgesWon() {
+    return hedgesWon.get();
+  }
+
+  /**
+   * @return hedges not sent because the rate limit was running low
+   */
+  public long getDeniedHedges() {
+    return deniedHedges.get();
+  }
+
+  @Override
+  public String toString() {
+    return "HedgeMetrics{" +
+        "calls=" + calls +
+        ", hedges=" + hedges +
+        ", hedgesWon=" + hedgesWon +
+        ", deniedHedges=" + deniedHedges +
+        '}';
+  }
+}
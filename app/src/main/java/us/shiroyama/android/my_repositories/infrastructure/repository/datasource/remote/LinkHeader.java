@@ -0,0 +1,98 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Parser for the GitHub pagination <code>Link</code> header
+ * <p>
+ * e.g. <code>&lt;https://api.github.com/user/1/repos?page=2&gt;; rel="next", &lt;https://api.github.com/user/1/repos?page=5&gt;; rel="last"</code>
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class LinkHeader {
+  public static final String HEADER = "Link";
+
+  public static final int NO_PAGE = -1;
+
+  private static final String PAGE = "page";
+
+  @NonNull
+  private final Map<String, String> urlByRel;
+
+  private LinkHeader(@NonNull Map<String, String> urlByRel) {
+    this.urlByRel = urlByRel;
+  }
+
+  @NonNull
+  public static LinkHeader parse(@Nullable String header) {
+    Map<String, String> urlByRel = new HashMap<>();
+    if (header == null) {
+      return new LinkHeader(urlByRel);
+    }
+    for (String link : header.split(",")) {
+      String[] segments = link.split(";");
+      String url = segments[0].trim();
+      if (!url.startsWith("<") || !url.endsWith(">")) {
+        continue;
+      }
+      url = url.substring(1, url.length() - 1);
+      for (int i = 1; i < segments.length; i++) {
+        String param = segments[i].trim();
+        if (param.startsWith("rel=")) {
+          urlByRel.put(param.substring("rel=".length()).replace("\"", ""), url);
+        }
+      }
+    }
+    return new LinkHeader(urlByRel);
+  }
+
+  /**
+   * @return page number of the <code>rel="last"</code> link, or {@link #NO_PAGE} on a single page result
+   */
+  public int getLastPage() {
+    return getPage(Rel.LAST);
+  }
+
+  /**
+   * @return page number of the <code>rel="next"</code> link, or {@link #NO_PAGE} on the last page
+   */
+  public int getNextPage() {
+    return getPage(Rel.NEXT);
+  }
+
+  private int getPage(@NonNull Rel rel) {
+    String url = urlByRel.get(rel.value);
+    if (url == null) {
+      return NO_PAGE;
+    }
+    HttpUrl httpUrl = HttpUrl.parse(url);
+    String page = httpUrl == null ? null : httpUrl.queryParameter(PAGE);
+    if (page == null) {
+      return NO_PAGE;
+    }
+    try {
+      return Integer.parseInt(page);
+    } catch (NumberFormatException e) {
+      return NO_PAGE;
+    }
+  }
+
+  private enum Rel {
+    NEXT("next"),
+    LAST("last");
+
+    @NonNull
+    private final String value;
+
+    Rel(@NonNull String value) {
+      this.value = value;
+    }
+  }
+}
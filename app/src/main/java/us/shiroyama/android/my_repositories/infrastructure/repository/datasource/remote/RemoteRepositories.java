@@ -0,0 +1,64 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+
+/**
+ * Result of a conditional repository list request along with its HTTP validators
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RemoteRepositories {
+  @NonNull
+  private final RepositoryRows rows;
+
+  private final boolean notModified;
+
+  @Nullable
+  private final String etag;
+
+  @Nullable
+  private final String lastModified;
+
+  private RemoteRepositories(@NonNull RepositoryRows rows, boolean notModified, @Nullable String etag, @Nullable String lastModified) {
+    this.rows = rows;
+    this.notModified = notModified;
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  @NonNull
+  public static RemoteRepositories of(@NonNull RepositoryRows rows, @Nullable String etag, @Nullable String lastModified) {
+    return new RemoteRepositories(rows, false, etag, lastModified);
+  }
+
+  @NonNull
+  public static RemoteRepositories notModified(@Nullable String etag, @Nullable String lastModified) {
+    return new RemoteRepositories(RepositoryRows.empty(), true, etag, lastModified);
+  }
+
+  /**
+   * @return fetched rows, always empty when {@link #isNotModified()}
+   */
+  @NonNull
+  public RepositoryRows getRows() {
+    return rows;
+  }
+
+  public boolean isNotModified() {
+    return notModified;
+  }
+
+  @Nullable
+  public String getEtag() {
+    return etag;
+  }
+
+  @Nullable
+  public String getLastModified() {
+    return lastModified;
+  }
+}
@@ -0,0 +1,181 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+
+/**
+ * Page size and server-side order of <code>users/{user}/repos</code>
+ * <p>
+ * The comparators reproduce the order for lists put together locally, e.g. merged pages or cached repositories.
+ * Repositories without the sort key come last.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public final class RepositoryListOptions {
+  /**
+   * Largest <code>per_page</code> accepted by GitHub
+   */
+  public static final int MAX_PER_PAGE = 100;
+
+  /**
+   * Recently updated first, which incremental refreshes and revalidation rely on
+   */
+  public static final RepositoryListOptions DEFAULT = new RepositoryListOptions(Sort.UPDATED, Direction.DESC, MAX_PER_PAGE);
+
+  public enum Sort {
+    CREATED("created"),
+    UPDATED("updated"),
+    PUSHED("pushed"),
+    FULL_NAME("full_name");
+
+    @NonNull
+    private final String value;
+
+    Sort(@NonNull String value) {
+      this.value = value;
+    }
+
+    @NonNull
+    public String getValue() {
+      return value;
+    }
+  }
+
+  public enum Direction {
+    ASC("asc"),
+    DESC("desc");
+
+    @NonNull
+    private final String value;
+
+    Direction(@NonNull String value) {
+      this.value = value;
+    }
+
+    @NonNull
+    public String getValue() {
+      return value;
+    }
+  }
+
+  @NonNull
+  private final Sort sort;
+
+  @NonNull
+  private final Direction direction;
+
+  private final int perPage;
+
+  /**
+   * @param perPage clamped to <code>1..{@link #MAX_PER_PAGE}</code>
+   */
+  public RepositoryListOptions(@NonNull Sort sort, @NonNull Direction direction, int perPage) {
+    this.sort = sort;
+    this.direction = direction;
+    this.perPage = Math.max(1, Math.min(MAX_PER_PAGE, perPage));
+  }
+
+  /**
+   * Uses the default direction of GitHub, ascending for {@link Sort#FULL_NAME} and descending otherwise
+   */
+  @NonNull
+  public static RepositoryListOptions of(@NonNull Sort sort) {
+    return new RepositoryListOptions(sort, sort == Sort.FULL_NAME ? Direction.ASC : Direction.DESC, MAX_PER_PAGE);
+  }
+
+  @NonNull
+  public Sort getSort() {
+    return sort;
+  }
+
+  @NonNull
+  public Direction getDirection() {
+    return direction;
+  }
+
+  public int getPerPage() {
+    return perPage;
+  }
+
+  /**
+   * @return true if the order is the one cached repositories are read in
+   */
+  public boolean isDefaultOrder() {
+    return sort == DEFAULT.sort && direction == DEFAULT.direction;
+  }
+
+  @NonNull
+  public Comparator<RoomRepositoryEntity> rowComparator() {
+    return (left, right) -> compareKeys(
+        key(left.getFullName(), left.getCreatedAt(), left.getUpdatedAt(), left.getPushedAt()),
+        key(right.getFullName(), right.getCreatedAt(), right.getUpdatedAt(), right.getPushedAt())
+    );
+  }
+
+  @NonNull
+  public Comparator<RepositoryEntity> entityComparator() {
+    return (left, right) -> compareKeys(
+        key(left.getFullName(), left.getCreatedAt(), left.getUpdatedAt(), left.getPushedAt()),
+        key(right.getFullName(), right.getCreatedAt(), right.getUpdatedAt(), right.getPushedAt())
+    );
+  }
+
+  @Nullable
+  private Comparable<?> key(@Nullable String fullName, @Nullable Comparable<?> createdAt, @Nullable Comparable<?> updatedAt, @Nullable Comparable<?> pushedAt) {
+    switch (sort) {
+      case CREATED:
+        return createdAt;
+      case PUSHED:
+        return pushedAt;
+      case FULL_NAME:
+        return fullName == null ? null : fullName.toLowerCase(Locale.US);
+      default:
+        return updatedAt;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compareKeys(@Nullable Comparable left, @Nullable Comparable right) {
+    if (left == null || right == null) {
+      return left == right ? 0 : left == null ? 1 : -1;
+    }
+    int result = left.compareTo(right);
+    return direction == Direction.DESC ? -result : result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    RepositoryListOptions that = (RepositoryListOptions) o;
+
+    if (perPage != that.perPage) return false;
+    if (sort != that.sort) return false;
+    return direction == that.direction;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = sort.hashCode();
+    result = 31 * result + direction.hashCode();
+    result = 31 * result + perPage;
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "RepositoryListOptions{" +
+        "sort=" + sort +
+        ", direction=" + direction +
+        ", perPage=" + perPage +
+        '}';
+  }
+}
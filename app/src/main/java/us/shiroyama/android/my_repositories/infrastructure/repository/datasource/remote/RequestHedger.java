@@ -0,0 +1,252 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Response;
+import us.shiroyama.android.my_repositories.common.CancellationToken;
+import us.shiroyama.android.my_repositories.common.RateLimitBudget;
+
+/**
+ * Executes a {@link Call} and sends an identical one if no response has arrived within a percentile of recent latencies
+ * <p>
+ * Whichever response comes first is used and the other call is cancelled.
+ * If one of them fails, the other one is still awaited. Hedges are only sent while the rate limit has headroom.
+ * Until enough latencies are known the delay is the upper bound.
+ * <p>
+ * Latencies are taken from OkHttp's request sent and response received times, so they end with the response headers
+ * and neither a slow body nor its decoding inflates the percentile.
+ * Only latencies of responses from the network are recorded, so the HTTP cache does not drag the percentile down.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RequestHedger {
+  public static final double DEFAULT_PERCENTILE = 0.95;
+
+  public static final int DEFAULT_WINDOW_SIZE = 100;
+
+  public static final int DEFAULT_MIN_SAMPLES = 20;
+
+  public static final long DEFAULT_MIN_DELAY_MILLIS = 100L;
+
+  public static final long DEFAULT_MAX_DELAY_MILLIS = 3000L;
+
+  private static final float LOW_BUDGET_FRACTION = 0.2f;
+
+  private final double percentile;
+
+  private final int minSamples;
+
+  private final long minDelayMillis;
+
+  private final long maxDelayMillis;
+
+  @NonNull
+  private final long[] latencies;
+
+  private int next;
+
+  private int recorded;
+
+  @NonNull
+  private final RateLimitBudget rateLimitBudget;
+
+  @NonNull
+  private final ExecutorService executor;
+
+  @NonNull
+  private final HedgeMetrics metrics = new HedgeMetrics();
+
+  public RequestHedger() {
+    this(
+        DEFAULT_PERCENTILE,
+        DEFAULT_WINDOW_SIZE,
+        DEFAULT_MIN_SAMPLES,
+        DEFAULT_MIN_DELAY_MILLIS,
+        DEFAULT_MAX_DELAY_MILLIS,
+        RateLimitBudget.Factory.INSTANCE.get(),
+        newExecutor()
+    );
+  }
+
+  /**
+   * @param percentile e.g. <code>0.95</code> to hedge the slowest 5% of calls
+   * @param windowSize number of recent latencies the percentile is taken from
+   * @param minSamples latencies recorded before the percentile replaces <code>maxDelayMillis</code>
+   * @param executor   runs both calls, so it must not be bounded by the number of concurrent callers
+   */
+  public RequestHedger(double percentile, int windowSize, int minSamples, long minDelayMillis, long maxDelayMillis, @NonNull RateLimitBudget rateLimitBudget, @NonNull ExecutorService executor) {
+    this.percentile = percentile;
+    this.latencies = new long[windowSize];
+    this.minSamples = minSamples;
+    this.minDelayMillis = minDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.rateLimitBudget = rateLimitBudget;
+    this.executor = executor;
+  }
+
+  @NonNull
+  public HedgeMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Cancelling the token cancels every call in flight
+   */
+  @NonNull
+  public <T> Response<T> execute(@NonNull CancellationToken token, @NonNull Call<T> call) throws IOException {
+    metrics.onCall();
+    BlockingQueue<Attempt<T>> completed = new LinkedBlockingQueue<>();
+    List<Attempt<T>> attempts = new CopyOnWriteArrayList<>();
+    Runnable cancelAll = () -> {
+      for (Attempt<T> attempt : attempts) {
+        attempt.call.cancel();
+      }
+    };
+    Attempt<T> winner = null;
+    token.register(cancelAll);
+    try {
+      start(attempts, new Attempt<>(call, false, completed));
+      Attempt<T> first = completed.poll(hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+      if (first == null) {
+        if (hasHeadroom()) {
+          start(attempts, new Attempt<>(call.clone(), true, completed));
+          token.throwIfCancelled();
+          metrics.onHedge();
+        } else {
+          metrics.onHedgeDenied();
+        }
+        first = completed.take();
+      }
+      winner = first;
+      if (first.failure != null && attempts.size() > 1) {
+        Attempt<T> second = completed.take();
+        if (second.failure == null) {
+          winner = second;
+        }
+      }
+      return winner.getResponse();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for a response");
+    } finally {
+      token.unregister(cancelAll);
+      for (Attempt<T> attempt : attempts) {
+        if (attempt != winner) {
+          attempt.call.cancel();
+        }
+      }
+      if (winner != null && winner.failure == null) {
+        if (winner.hedge) {
+          metrics.onHedgeWon();
+        }
+        if (winner.response != null && winner.response.raw().networkResponse() != null) {
+          okhttp3.Response raw = winner.response.raw();
+          record(raw.receivedResponseAtMillis() - raw.sentRequestAtMillis());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the percentile of recent latencies within the bounds, or the upper bound while too few are known
+   */
+  synchronized long hedgeDelayMillis() {
+    if (recorded == 0 || recorded < minSamples) {
+      return maxDelayMillis;
+    }
+    long[] sorted = Arrays.copyOf(latencies, recorded);
+    Arrays.sort(sorted);
+    int index = Math.min(recorded - 1, Math.max(0, (int) Math.ceil(percentile * recorded) - 1));
+    return Math.max(minDelayMillis, Math.min(maxDelayMillis, sorted[index]));
+  }
+
+  synchronized void record(long latencyMillis) {
+    latencies[next] = latencyMillis;
+    next = (next + 1) % latencies.length;
+    if (recorded < latencies.length) {
+      recorded++;
+    }
+  }
+
+  private boolean hasHeadroom() {
+    return !rateLimitBudget.isExhausted() && !rateLimitBudget.isLow(LOW_BUDGET_FRACTION);
+  }
+
+  private <T> void start(@NonNull List<Attempt<T>> attempts, @NonNull Attempt<T> attempt) {
+    attempts.add(attempt);
+    executor.execute(attempt);
+  }
+
+  @NonNull
+  private static ExecutorService newExecutor() {
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS, new SynchronousQueue<>());
+  }
+
+  /**
+   * One of the identical calls. Results are published through the queue.
+   */
+  private static class Attempt<T> implements Runnable {
+    @NonNull
+    private final Call<T> call;
+
+    private final boolean hedge;
+
+    @NonNull
+    private final BlockingQueue<Attempt<T>> completed;
+
+    @Nullable
+    private Response<T> response;
+
+    @Nullable
+    private Throwable failure;
+
+    Attempt(@NonNull Call<T> call, boolean hedge, @NonNull BlockingQueue<Attempt<T>> completed) {
+      this.call = call;
+      this.hedge = hedge;
+      this.completed = completed;
+    }
+
+    @Override
+    public void run() {
+      try {
+        response = call.execute();
+      } catch (Throwable e) {
+        failure = e;
+      }
+      completed.add(this);
+    }
+
+    @NonNull
+    Response<T> getResponse() throws IOException {
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        throw new IOException(failure);
+      }
+      assert response != null;
+      return response;
+    }
+  }
+}
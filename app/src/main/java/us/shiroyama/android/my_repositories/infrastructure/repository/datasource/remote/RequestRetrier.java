@@ -0,0 +1,115 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+import us.shiroyama.android.my_repositories.common.CancellationToken;
+import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+
+/**
+ * Retries transient failures of a single idempotent request by {@link RetryPolicy}
+ * <p>
+ * Applied to each page call, so a failure on a late page does not fetch the earlier ones again,
+ * and {@link RetryBudget} is charged per request actually sent.
+ * Retries stop when the budget runs out or the {@link CancellationToken} is cancelled, which also cuts a backoff short.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RequestRetrier {
+  @NonNull
+  private final RetryPolicy retryPolicy;
+
+  @NonNull
+  private final RetryBudget retryBudget;
+
+  @NonNull
+  private final Sleeper sleeper;
+
+  @NonNull
+  private final RetryMetrics metrics = new RetryMetrics();
+
+  public RequestRetrier() {
+    this(new RetryPolicy(), RetryBudget.Factory.INSTANCE.get(), Sleeper.DEFAULT);
+  }
+
+  public RequestRetrier(@NonNull RetryPolicy retryPolicy, @NonNull RetryBudget retryBudget, @NonNull Sleeper sleeper) {
+    this.retryPolicy = retryPolicy;
+    this.retryBudget = retryBudget;
+    this.sleeper = sleeper;
+  }
+
+  @NonNull
+  public RetryMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @param token passed explicitly since page calls may run on another thread than the caller's
+   */
+  public <T> T execute(@NonNull CancellationToken token, @NonNull Request<T> request) throws IOException, ApiException {
+    retryBudget.onCall();
+    metrics.onCall();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return request.execute();
+      } catch (IOException | ApiException e) {
+        // a cancelled call fails with an IOException too, which must not be retried
+        if (attempt >= retryPolicy.getMaxAttempts() || token.isCancelled()) {
+          throw e;
+        }
+        long delayMillis = retryPolicy.retryDelayMillis(e, attempt, System.currentTimeMillis());
+        if (delayMillis == RetryPolicy.NO_RETRY) {
+          throw e;
+        }
+        if (!retryBudget.tryAcquire()) {
+          metrics.onRetryDenied();
+          throw e;
+        }
+        metrics.onRetry(delayMillis);
+        Timber.d(e, "retry %d in %d ms, %s", attempt, delayMillis, metrics);
+        sleeper.sleep(token, delayMillis);
+      }
+    }
+  }
+
+  /**
+   * A request which is sent again on each attempt
+   */
+  public interface Request<T> {
+    T execute() throws IOException, ApiException;
+  }
+
+  /**
+   * Waits for a backoff
+   */
+  public interface Sleeper {
+    /**
+     * Returns early when the token is cancelled
+     */
+    Sleeper DEFAULT = (token, millis) -> {
+      CountDownLatch cancelled = new CountDownLatch(1);
+      Runnable wakeUp = cancelled::countDown;
+      token.register(wakeUp);
+      try {
+        cancelled.await(millis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while backing off");
+      } finally {
+        token.unregister(wakeUp);
+      }
+      token.throwIfCancelled();
+    };
+
+    /**
+     * @throws InterruptedIOException when cancelled or interrupted meanwhile
+     */
+    void sleep(@NonNull CancellationToken token, long millis) throws InterruptedIOException;
+  }
+}
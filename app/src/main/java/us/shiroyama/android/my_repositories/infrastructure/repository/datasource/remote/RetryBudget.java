@@ -0,0 +1,65 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+
+import us.shiroyama.android.my_repositories.common.Singleton;
+
+/**
+ * Token bucket shared by every retrying caller, so a failing backend never receives more than
+ * about <code>ratio</code> extra requests per original request
+ * <p>
+ * Each call deposits <code>ratio</code> tokens and each retry withdraws one.
+ * The bucket starts full, allowing a burst of <code>maxTokens</code> retries.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RetryBudget {
+  public static final int DEFAULT_MAX_TOKENS = 10;
+
+  public static final double DEFAULT_RATIO = 0.2;
+
+  private final double maxTokens;
+
+  private final double ratio;
+
+  private double tokens;
+
+  public RetryBudget() {
+    this(DEFAULT_MAX_TOKENS, DEFAULT_RATIO);
+  }
+
+  public RetryBudget(int maxTokens, double ratio) {
+    this.maxTokens = maxTokens;
+    this.ratio = ratio;
+    this.tokens = maxTokens;
+  }
+
+  public synchronized void onCall() {
+    tokens = Math.min(maxTokens, tokens + ratio);
+  }
+
+  /**
+   * @return true if a retry is allowed, consuming a token
+   */
+  public synchronized boolean tryAcquire() {
+    if (tokens < 1.0) {
+      return false;
+    }
+    tokens -= 1.0;
+    return true;
+  }
+
+  public enum Factory implements Singleton<RetryBudget> {
+    INSTANCE;
+
+    @NonNull
+    private final RetryBudget instance = new RetryBudget();
+
+    @NonNull
+    @Override
+    public RetryBudget get() {
+      return instance;
+    }
+  }
+}
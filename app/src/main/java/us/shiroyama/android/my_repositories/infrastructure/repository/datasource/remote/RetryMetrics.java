@@ -0,0 +1,67 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of {@link RequestRetrier}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RetryMetrics {
+  private final AtomicLong calls = new AtomicLong();
+
+  private final AtomicLong retries = new AtomicLong();
+
+  private final AtomicLong deniedRetries = new AtomicLong();
+
+  private final AtomicLong totalDelayMillis = new AtomicLong();
+
+  void onCall() {
+    calls.incrementAndGet();
+  }
+
+  void onRetry(long delayMillis) {
+    retries.incrementAndGet();
+    totalDelayMillis.addAndGet(delayMillis);
+  }
+
+  void onRetryDenied() {
+    deniedRetries.incrementAndGet();
+  }
+
+  /**
+   * @return requests made by callers, not counting retries
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * @return retries given up because {@link RetryBudget} ran out
+   */
+  public long getDeniedRetries() {
+    return deniedRetries.get();
+  }
+
+  /**
+   * @return sum of backoff delays slept before retries
+   */
+  public long getTotalDelayMillis() {
+    return totalDelayMillis.get();
+  }
+
+  @Override
+  public String toString() {
+    return "RetryMetrics{" +
+        "calls=" + calls +
+        ", retries=" + retries +
+        ", deniedRetries=" + deniedRetries +
+        ", totalDelayMillis=" + totalDelayMillis +
+        '}';
+  }
+}
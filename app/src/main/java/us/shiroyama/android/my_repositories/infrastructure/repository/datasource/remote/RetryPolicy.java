@@ -0,0 +1,91 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import android.support.annotation.NonNull;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.SecondaryRateLimitException;
+
+/**
+ * Which failures of an idempotent GET are retried, and how long to wait before each retry
+ * <p>
+ * Connection resets, timeouts, <code>502</code>, <code>503</code>, <code>504</code> and the secondary rate limit are transient.
+ * Delays grow exponentially up to <code>maxDelayMillis</code> with full jitter, so clients failing together do not retry together.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RetryPolicy {
+  public static final long NO_RETRY = -1L;
+
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  public static final long DEFAULT_BASE_DELAY_MILLIS = 500L;
+
+  public static final long DEFAULT_MAX_DELAY_MILLIS = 8000L;
+
+  private final int maxAttempts;
+
+  private final long baseDelayMillis;
+
+  private final long maxDelayMillis;
+
+  @NonNull
+  private final Random random;
+
+  public RetryPolicy() {
+    this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, new Random());
+  }
+
+  /**
+   * @param maxAttempts including the first one
+   */
+  public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, @NonNull Random random) {
+    this.maxAttempts = maxAttempts;
+    this.baseDelayMillis = baseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.random = random;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @param retry     1 for the first retry
+   * @param nowMillis current epoch millis
+   * @return millis to wait before the retry, or {@link #NO_RETRY}
+   */
+  public long retryDelayMillis(@NonNull Exception e, int retry, long nowMillis) {
+    if (!isTransient(e)) {
+      return NO_RETRY;
+    }
+    long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry - 1, 30));
+    long backoff = (long) (random.nextDouble() * cap);
+    if (e instanceof SecondaryRateLimitException) {
+      long retryAfter = ((SecondaryRateLimitException) e).getResetAtMillis() - nowMillis;
+      return retryAfter > maxDelayMillis ? NO_RETRY : Math.max(retryAfter, backoff);
+    }
+    return backoff;
+  }
+
+  static boolean isTransient(@NonNull Exception e) {
+    if (e instanceof SecondaryRateLimitException) {
+      return true;
+    }
+    if (e instanceof RateLimitException) {
+      // the primary budget only comes back at its reset, usually minutes later
+      return false;
+    }
+    if (e instanceof ApiException) {
+      int code = ((ApiException) e).getCode();
+      return code == 502 || code == 503 || code == 504;
+    }
+    // ConnectException and "Connection reset" are SocketExceptions
+    return e instanceof SocketTimeoutException || e instanceof SocketException;
+  }
+}
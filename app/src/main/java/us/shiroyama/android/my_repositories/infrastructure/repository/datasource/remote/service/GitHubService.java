@@ -1,12 +1,11 @@
 package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.service;
 
-import java.util.List;
-
 import retrofit2.Call;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
-import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
 
 /**
  * REST Interface for GitHub
@@ -15,10 +14,20 @@ import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEnti
  */
 
 public interface GitHubService {
+  /**
+   * The body is decoded straight into table rows, see {@link us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryRowsTypeAdapter}
+   *
+   * @param perPage up to 100, GitHub defaults to 30
+   */
   @GET("users/{user}/repos")
-  Call<List<RepositoryEntity>> getUserRepositories(
+  Call<RepositoryRows> getUserRepositories(
       @Path("user") String user,
       @Query("sort") String sort,
-      @Query("direction") String direction
+      @Query("direction") String direction,
+      @Query("page") int page,
+      @Query("per_page") int perPage,
+      @Header("If-None-Match") String ifNoneMatch,
+      @Header("If-Modified-Since") String ifModifiedSince,
+      @Header("Cache-Control") String cacheControl
   );
 }
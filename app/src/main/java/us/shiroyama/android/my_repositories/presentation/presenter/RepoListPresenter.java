@@ -5,7 +5,10 @@ import android.support.annotation.Nullable;
 
 import com.squareup.otto.Subscribe;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import us.shiroyama.android.my_repositories.domain.model.Repository;
 import us.shiroyama.android.my_repositories.domain.usecase.GetRepositories;
@@ -31,6 +34,32 @@ public class RepoListPresenter extends BasePresenter<RepoListContract.View> impl
   @Nullable
   TaskTicket ticket;
 
+  /**
+   * account whose repositories are shown, so that late results of another one are dropped
+   */
+  @Nullable
+  String account;
+
+  /**
+   * ticket of the outstanding load of the next page, which is cancelled whenever the list is replaced
+   */
+  @Nullable
+  TaskTicket loadMoreTicket;
+
+  /**
+   * param of the page following the shown repositories, or null if they are all shown
+   */
+  @Nullable
+  GetRepositories.Param next;
+
+  boolean loadingMore;
+
+  /**
+   * repositories shown, in page order
+   */
+  @NonNull
+  final List<Repository> shown = new ArrayList<>();
+
   public RepoListPresenter(@NonNull GetRepositories getRepositories, @NonNull RepoViewModelMapper mapper) {
     this.getRepositories = getRepositories;
     this.mapper = mapper;
@@ -39,30 +68,130 @@ public class RepoListPresenter extends BasePresenter<RepoListContract.View> impl
   @Override
   public void getRepositoryList(@NonNull String account) {
     view.showProgressBar();
-    ticket = getRepositories.enqueue(GetRepositories.Param.newInstance(account));
+    replaceList(account);
+    ticket = getRepositories.enqueue(GetRepositories.Param.firstPage(account, GetRepositories.Param.DEFAULT_PAGE_SIZE));
   }
 
   @Override
   public void refreshRepositoryList(@NonNull String account) {
+    replaceList(account);
     ticket = getRepositories.enqueue(GetRepositories.Param.newInstance(account, true));
   }
 
+  @Override
+  public void loadMoreRepositoryList() {
+    if (next == null || loadingMore) {
+      return;
+    }
+    loadingMore = true;
+    loadMoreTicket = getRepositories.enqueue(next);
+  }
+
   @Override
   public void onDestroyView() {
     ofNullable(ticket).ifPresent(ticket -> ticket.cancel(true));
+    cancelLoadMore();
   }
 
   @Subscribe
   public void onSuccess(GetRepositories.OnSuccessGetRepositories success) {
+    if (account != null && success.getAccount() != null && !account.equals(success.getAccount())) {
+      // a late result of the account shown before
+      return;
+    }
+    if (success.isAppended() && !loadingMore) {
+      // a page of a list which has been replaced since it was requested
+      return;
+    }
     view.hideProgressBar();
     List<Repository> repositories = success.getItem();
-    view.showRepositoryList(mapper.convertList(repositories));
+    if (success.isFirstPageUpdate()) {
+      mergeFirstPage(repositories, success.getNext());
+    } else if (success.isAppended()) {
+      loadMoreTicket = null;
+      loadingMore = false;
+      shown.addAll(repositories);
+      next = success.getNext();
+      view.appendRepositoryList(mapper.convertList(repositories));
+    } else {
+      cancelLoadMore();
+      shown.clear();
+      shown.addAll(repositories);
+      next = success.getNext();
+      view.showRepositoryList(mapper.convertList(repositories));
+    }
+    if (success.isStale()) {
+      view.showStaleNotice();
+    }
   }
 
   @Subscribe
   public void onError(GetRepositories.OnFailureGetRepositories failure) {
     view.hideProgressBar();
     view.showError(failure.getItem().getMessage());
+    if (loadingMore) {
+      // the shown repositories stay, and scrolling to the end requests the same page again
+      loadingMore = false;
+      loadMoreTicket = null;
+      return;
+    }
     finishActivity();
   }
+
+  /**
+   * Replaces the top of the shown list with a revalidated first page.
+   * Shown repositories older than the last one of the page stay, together with the param of the page following them;
+   * the others are either on the new page or gone.
+   *
+   * @param firstPageNext param of the page following the revalidated one
+   */
+  private void mergeFirstPage(@NonNull List<Repository> firstPage, @Nullable GetRepositories.Param firstPageNext) {
+    List<Repository> merged = new ArrayList<>(firstPage);
+    if (firstPageNext != null && !firstPage.isEmpty()) {
+      Repository last = firstPage.get(firstPage.size() - 1);
+      Set<Long> ids = new HashSet<>();
+      for (Repository repository : firstPage) {
+        ids.add(repository.getId());
+      }
+      for (Repository repository : shown) {
+        if (isOlder(repository, last) && !ids.contains(repository.getId())) {
+          merged.add(repository);
+        }
+      }
+    }
+    if (merged.size() == firstPage.size()) {
+      // nothing shown is left below the page, so the list goes on right after it
+      cancelLoadMore();
+      next = firstPageNext;
+    }
+    shown.clear();
+    shown.addAll(merged);
+    view.updateRepositoryList(mapper.convertList(merged));
+  }
+
+  /**
+   * @return true if the repository comes after the other one in page order, which is newest first with ties broken by descending id
+   */
+  private static boolean isOlder(@NonNull Repository repository, @NonNull Repository other) {
+    if (repository.getUpdatedAt().isEqual(other.getUpdatedAt())) {
+      return repository.getId() < other.getId();
+    }
+    return repository.getUpdatedAt().isBefore(other.getUpdatedAt());
+  }
+
+  /**
+   * Cancels the previous load together with its background revalidation before loading another list
+   */
+  private void replaceList(@NonNull String account) {
+    ofNullable(ticket).ifPresent(ticket -> ticket.cancel(true));
+    cancelLoadMore();
+    next = null;
+    this.account = account;
+  }
+
+  private void cancelLoadMore() {
+    ofNullable(loadMoreTicket).ifPresent(ticket -> ticket.cancel(true));
+    loadMoreTicket = null;
+    loadingMore = false;
+  }
 }
@@ -2,6 +2,7 @@ package us.shiroyama.android.my_repositories.presentation.view.adapter;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -69,6 +70,69 @@ public class RepoListAdapter extends RecyclerView.Adapter<RepoListAdapter.ViewHo
     notifyDataSetChanged();
   }
 
+  public void addViewModels(@NonNull List<RepoViewModel> viewModels) {
+    int positionStart;
+    synchronized (this.viewModels) {
+      positionStart = this.viewModels.size();
+      this.viewModels.addAll(viewModels);
+    }
+    notifyItemRangeInserted(positionStart, viewModels.size());
+  }
+
+  /**
+   * Replaces the view models and notifies only the rows which have changed, so the list keeps its scroll position
+   */
+  public void updateViewModels(@NonNull List<RepoViewModel> viewModels) {
+    DiffUtil.DiffResult diffResult;
+    synchronized (this.viewModels) {
+      diffResult = DiffUtil.calculateDiff(new DiffCallback(new ArrayList<>(this.viewModels), viewModels));
+      this.viewModels.clear();
+      this.viewModels.addAll(viewModels);
+    }
+    diffResult.dispatchUpdatesTo(this);
+  }
+
+  /**
+   * Tells repositories apart by their URL and compares what a row shows
+   */
+  private static class DiffCallback extends DiffUtil.Callback {
+    @NonNull
+    private final List<RepoViewModel> oldViewModels;
+
+    @NonNull
+    private final List<RepoViewModel> newViewModels;
+
+    DiffCallback(@NonNull List<RepoViewModel> oldViewModels, @NonNull List<RepoViewModel> newViewModels) {
+      this.oldViewModels = oldViewModels;
+      this.newViewModels = newViewModels;
+    }
+
+    @Override
+    public int getOldListSize() {
+      return oldViewModels.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+      return newViewModels.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+      return oldViewModels.get(oldItemPosition).getHtmlUrl().equals(newViewModels.get(newItemPosition).getHtmlUrl());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+      RepoViewModel oldViewModel = oldViewModels.get(oldItemPosition);
+      RepoViewModel newViewModel = newViewModels.get(newItemPosition);
+      return oldViewModel.getRepoName().equals(newViewModel.getRepoName())
+          && oldViewModel.getDescription().equals(newViewModel.getDescription())
+          && oldViewModel.getOwnerAvatarUrl().equals(newViewModel.getOwnerAvatarUrl())
+          && oldViewModel.getUpdatedAt().isEqual(newViewModel.getUpdatedAt());
+    }
+  }
+
   /**
    * View Holder
    */
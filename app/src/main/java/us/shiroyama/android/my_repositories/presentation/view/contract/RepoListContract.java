@@ -19,16 +19,36 @@ public interface RepoListContract {
   interface View extends BaseView {
     void showRepositoryList(@NonNull List<RepoViewModel> repositoryList);
 
+    /**
+     * Adds the next page below the repositories already shown
+     */
+    void appendRepositoryList(@NonNull List<RepoViewModel> repositoryList);
+
+    /**
+     * Replaces the shown repositories with only the changed rows updated, so the list stays where it is scrolled to
+     */
+    void updateRepositoryList(@NonNull List<RepoViewModel> repositoryList);
+
     void showProgressBar();
 
     void hideProgressBar();
 
     void showError(@NonNull String message);
+
+    /**
+     * Tells that the list shown is cached because GitHub is unavailable
+     */
+    void showStaleNotice();
   }
 
   interface Interaction {
     void getRepositoryList(@NonNull String account);
 
     void refreshRepositoryList(@NonNull String account);
+
+    /**
+     * Loads the page following the shown repositories, if any and not already loading
+     */
+    void loadMoreRepositoryList();
   }
 }
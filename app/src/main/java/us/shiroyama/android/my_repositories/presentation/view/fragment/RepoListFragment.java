@@ -34,6 +34,11 @@ import static com.annimon.stream.Optional.ofNullable;
  */
 
 public class RepoListFragment extends BaseFragment<RepoListContract.View, RepoListPresenter> implements RepoListContract.View {
+  /**
+   * remaining items below the last visible one at which the next page is requested
+   */
+  private static final int LOAD_MORE_THRESHOLD = 10;
+
   @BindView(R.id.progress)
   View progressBar;
 
@@ -93,8 +98,17 @@ public class RepoListFragment extends BaseFragment<RepoListContract.View, RepoLi
   private void initRecycler() {
     ofNullable(getActivity()).ifPresent(activity -> {
       adapter = new RepoListAdapter(activity);
-      recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+      LinearLayoutManager layoutManager = new LinearLayoutManager(activity);
+      recyclerView.setLayoutManager(layoutManager);
       recyclerView.setAdapter(adapter);
+      recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+          if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+            presenter.loadMoreRepositoryList();
+          }
+        }
+      });
       presenter.getRepositoryList(account);
     });
   }
@@ -111,6 +125,16 @@ public class RepoListFragment extends BaseFragment<RepoListContract.View, RepoLi
     adapter.setViewModels(repositoryList);
   }
 
+  @Override
+  public void appendRepositoryList(@NonNull List<RepoViewModel> repositoryList) {
+    adapter.addViewModels(repositoryList);
+  }
+
+  @Override
+  public void updateRepositoryList(@NonNull List<RepoViewModel> repositoryList) {
+    adapter.updateViewModels(repositoryList);
+  }
+
   @Override
   public void showProgressBar() {
     progressBar.setVisibility(View.VISIBLE);
@@ -128,4 +152,9 @@ public class RepoListFragment extends BaseFragment<RepoListContract.View, RepoLi
         : message;
     Toast.makeText(getContext(), message, Toast.LENGTH_SHORT).show();
   }
+
+  @Override
+  public void showStaleNotice() {
+    Toast.makeText(getContext(), R.string.notice_showing_cached_repositories, Toast.LENGTH_LONG).show();
+  }
 }
@@ -0,0 +1,123 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+import org.threeten.bp.ZoneOffset;
+import org.threeten.bp.ZonedDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark of {@link GsonProvider.ZonedDateTimeTypeAdapter} against the previous
+ * <code>JsonDeserializer</code> going through {@link DateTimeFormatter#ISO_DATE_TIME}, on the timestamps of the recorded responses.
+ * See {@link MicroBenchmark} for how to run it.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class GsonProviderBenchmark {
+  /**
+   * tolerated allocation per timestamp on top of the resulting {@link ZonedDateTime}, for measurement noise
+   */
+  private static final long NOISE_BYTES_PER_TIMESTAMP = 8L;
+
+  private final Type listType = new TypeToken<List<ZonedDateTime>>() {
+  }.getType();
+
+  private final MicroBenchmark benchmark = new MicroBenchmark(2000, 10000);
+
+  /**
+   * The hand-written parser allocates nothing but the {@link ZonedDateTime} it returns,
+   * which is measured by building the same values with {@link ZonedDateTime#of} directly.
+   */
+  @Test
+  public void parse() throws Exception {
+    List<String> timestamps = recordedTimestamps();
+    List<ZonedDateTime> expected = new ArrayList<>(timestamps.size());
+    for (String timestamp : timestamps) {
+      expected.add(ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME));
+    }
+
+    MicroBenchmark.Result formatter = benchmark.measure("formatter", () -> {
+      ZonedDateTime last = null;
+      for (String timestamp : timestamps) {
+        last = ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME);
+      }
+      return last;
+    });
+    MicroBenchmark.Result handWritten = benchmark.measure("hand-written", () -> {
+      ZonedDateTime last = null;
+      for (String timestamp : timestamps) {
+        last = GsonProvider.ZonedDateTimeTypeAdapter.parse(timestamp);
+      }
+      return last;
+    });
+    MicroBenchmark.Result resultOnly = benchmark.measure("ZonedDateTime.of only", () -> {
+      ZonedDateTime last = null;
+      for (ZonedDateTime value : expected) {
+        last = ZonedDateTime.of(value.getYear(), value.getMonthValue(), value.getDayOfMonth(),
+            value.getHour(), value.getMinute(), value.getSecond(), 0, ZoneOffset.UTC);
+      }
+      return last;
+    });
+
+    assertThat(handWritten.getNanosPerOp()).isLessThan(formatter.getNanosPerOp());
+    assertThat(handWritten.getBytesPerOp()).isLessThan(formatter.getBytesPerOp());
+    assertThat(handWritten.getBytesPerOp()).isLessThanOrEqualTo(resultOnly.getBytesPerOp() + NOISE_BYTES_PER_TIMESTAMP * timestamps.size());
+  }
+
+  /**
+   * Decoding the timestamps of a realistic payload through {@link Gson}, where the deserializer also builds a {@link JsonElement} per value
+   */
+  @Test
+  public void fromJson() throws Exception {
+    Gson deserializer = new GsonBuilder()
+        .registerTypeAdapter(ZonedDateTime.class, (JsonDeserializer<ZonedDateTime>) (json, typeOfT, context) ->
+            ZonedDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_DATE_TIME))
+        .create();
+    Gson streaming = GsonProvider.INSTANCE.get();
+    String json = new Gson().toJson(recordedTimestamps());
+
+    MicroBenchmark.Result previous = benchmark.measure("JsonDeserializer", () -> deserializer.fromJson(json, listType));
+    MicroBenchmark.Result current = benchmark.measure("ZonedDateTimeTypeAdapter", () -> streaming.fromJson(json, listType));
+
+    assertThat(current.getNanosPerOp()).isLessThan(previous.getNanosPerOp());
+    assertThat(current.getBytesPerOp()).isLessThan(previous.getBytesPerOp());
+  }
+
+  /**
+   * @return created_at, updated_at and pushed_at of every recorded repository
+   */
+  @NonNull
+  private List<String> recordedTimestamps() {
+    List<String> timestamps = new ArrayList<>();
+    JsonParser parser = new JsonParser();
+    for (String fileName : new String[]{"users_srym_repos.json", "users_ymnder_repos.json"}) {
+      JsonArray repositories = parser.parse(new InputStreamReader(getClass().getClassLoader().getResourceAsStream(fileName))).getAsJsonArray();
+      for (JsonElement repository : repositories) {
+        for (String field : new String[]{"created_at", "updated_at", "pushed_at"}) {
+          JsonElement timestamp = repository.getAsJsonObject().get(field);
+          if (timestamp != null && !timestamp.isJsonNull()) {
+            timestamps.add(timestamp.getAsString());
+          }
+        }
+      }
+    }
+    return timestamps;
+  }
+}
@@ -0,0 +1,102 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+import org.threeten.bp.ZonedDateTime;
+import org.threeten.bp.format.DateTimeFormatter;
+
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link GsonProvider}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class GsonProviderTest {
+  private final Type listType = new TypeToken<List<ZonedDateTime>>() {
+  }.getType();
+
+  @Test
+  public void parse_utc_sameAsFormatter() throws Exception {
+    for (String timestamp : recordedTimestamps()) {
+      assertThat(GsonProvider.ZonedDateTimeTypeAdapter.parse(timestamp))
+          .isEqualTo(ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME));
+    }
+  }
+
+  @Test
+  public void parse_unusualShapes_fallBackToFormatter() throws Exception {
+    String[] timestamps = {
+        "2018-01-26T14:21:03+09:00",
+        "2018-01-26T05:21:03.123Z",
+        "2016-02-29T00:00:00Z"
+    };
+    for (String timestamp : timestamps) {
+      assertThat(GsonProvider.ZonedDateTimeTypeAdapter.parse(timestamp))
+          .isEqualTo(ZonedDateTime.parse(timestamp, DateTimeFormatter.ISO_DATE_TIME));
+    }
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void parse_outOfRange_throws() throws Exception {
+    GsonProvider.ZonedDateTimeTypeAdapter.parse("2018-13-26T05:21:03Z");
+  }
+
+  @Test
+  public void fromJson_null() throws Exception {
+    List<ZonedDateTime> ret = GsonProvider.INSTANCE.get().fromJson("[null, \"2018-01-26T05:21:03Z\"]", listType);
+    assertThat(ret.get(0)).isNull();
+    assertThat(ret.get(1).toEpochSecond()).isEqualTo(1516944063L);
+  }
+
+  /**
+   * Every timestamp of the recorded responses decodes the same as with the previous <code>JsonDeserializer</code>.
+   */
+  @Test
+  public void fromJson_sameAsDeserializer() throws Exception {
+    Gson deserializer = new GsonBuilder()
+        .registerTypeAdapter(ZonedDateTime.class, (JsonDeserializer<ZonedDateTime>) (json, typeOfT, context) ->
+            ZonedDateTime.parse(json.getAsString(), DateTimeFormatter.ISO_DATE_TIME))
+        .create();
+    String json = new Gson().toJson(recordedTimestamps());
+
+    assertThat(GsonProvider.INSTANCE.get().<List<ZonedDateTime>>fromJson(json, listType))
+        .isEqualTo(deserializer.<List<ZonedDateTime>>fromJson(json, listType));
+  }
+
+  /**
+   * @return created_at, updated_at and pushed_at of every recorded repository
+   */
+  @NonNull
+  private List<String> recordedTimestamps() {
+    List<String> timestamps = new ArrayList<>();
+    JsonParser parser = new JsonParser();
+    for (String fileName : new String[]{"users_srym_repos.json", "users_ymnder_repos.json"}) {
+      JsonArray repositories = parser.parse(new InputStreamReader(getClass().getClassLoader().getResourceAsStream(fileName))).getAsJsonArray();
+      for (JsonElement repository : repositories) {
+        for (String field : new String[]{"created_at", "updated_at", "pushed_at"}) {
+          JsonElement timestamp = repository.getAsJsonObject().get(field);
+          if (timestamp != null && !timestamp.isJsonNull()) {
+            timestamps.add(timestamp.getAsString());
+          }
+        }
+      }
+    }
+    return timestamps;
+  }
+}
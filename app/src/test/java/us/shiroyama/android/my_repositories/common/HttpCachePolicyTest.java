@@ -0,0 +1,115 @@
+package us.shiroyama.android.my_repositories.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link HttpCachePolicy}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class HttpCachePolicyTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private MockWebServer mockWebServer;
+  private Cache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+    cache = new Cache(temporaryFolder.newFolder("http"), 1024L * 1024L);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    cache.close();
+    mockWebServer.shutdown();
+  }
+
+  /**
+   * <code>no-cache</code> of the server is replaced, so the second request never reaches the network.
+   */
+  @Test
+  public void repeatedRequest_servedFromDisk() throws Exception {
+    OkHttpClient client = newClient(new HttpCachePolicy());
+    mockWebServer.enqueue(new MockResponse().setHeader("Cache-Control", "no-cache").setBody("[]"));
+
+    assertThat(body(client, request("/users/srym/repos", null))).isEqualTo("[]");
+    assertThat(body(client, request("/users/srym/repos", null))).isEqualTo("[]");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void forceNetwork_bypassesDisk() throws Exception {
+    OkHttpClient client = newClient(new HttpCachePolicy());
+    mockWebServer.enqueue(new MockResponse().setBody("[]"));
+    mockWebServer.enqueue(new MockResponse().setBody("[{}]"));
+
+    body(client, request("/users/srym/repos", null));
+    assertThat(body(client, request("/users/srym/repos", HttpCachePolicy.FORCE_NETWORK))).isEqualTo("[{}]");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+  }
+
+  /**
+   * An expired response is still served while the server is unreachable.
+   */
+  @Test
+  public void offline_servesStaleResponse() throws Exception {
+    OkHttpClient client = newClient(new HttpCachePolicy(0, HttpCachePolicy.DEFAULT_MAX_STALE_SECONDS));
+    mockWebServer.enqueue(new MockResponse().setBody("[]"));
+    Request request = request("/users/srym/repos", null);
+
+    body(client, request);
+    mockWebServer.shutdown();
+    assertThat(body(client, request)).isEqualTo("[]");
+  }
+
+  @Test(expected = IOException.class)
+  public void offline_forceNetwork_fails() throws Exception {
+    OkHttpClient client = newClient(new HttpCachePolicy(0, HttpCachePolicy.DEFAULT_MAX_STALE_SECONDS));
+    mockWebServer.enqueue(new MockResponse().setBody("[]"));
+
+    body(client, request("/users/srym/repos", null));
+    mockWebServer.shutdown();
+    body(client, request("/users/srym/repos", HttpCachePolicy.FORCE_NETWORK));
+  }
+
+  private OkHttpClient newClient(HttpCachePolicy policy) {
+    return new OkHttpClient.Builder()
+        .cache(cache)
+        .addInterceptor(policy.offlineInterceptor())
+        .addNetworkInterceptor(policy.networkInterceptor())
+        .build();
+  }
+
+  private Request request(String path, String cacheControl) {
+    Request.Builder builder = new Request.Builder().url(mockWebServer.url(path));
+    if (cacheControl != null) {
+      builder.header("Cache-Control", cacheControl);
+    }
+    return builder.build();
+  }
+
+  private String body(OkHttpClient client, Request request) throws IOException {
+    try (Response response = client.newCall(request).execute()) {
+      return response.body().string();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package us.shiroyama.android.my_repositories.common;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link HttpLogInterceptor}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class HttpLogInterceptorTest {
+  private static final String BODY = "0123456789abcdefghij";
+
+  private final List<String> logs = new ArrayList<>();
+
+  private MockWebServer mockWebServer;
+
+  @Before
+  public void setUp() throws Exception {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    mockWebServer.shutdown();
+  }
+
+  /**
+   * Only the first <code>maxBodyBytes</code> are logged while the caller still reads the whole body.
+   */
+  @Test
+  public void body_truncatedToCap() throws Exception {
+    OkHttpClient client = newClient(new HttpLogInterceptor(HttpLogInterceptor.Level.BODY, 1, 10L, logs::add));
+    mockWebServer.enqueue(new MockResponse().setBody(BODY));
+
+    assertThat(call(client)).isEqualTo(BODY);
+    assertThat(logs).contains("0123456789", "<-- END HTTP (truncated to 10 bytes)");
+    assertThat(logs).doesNotContain(BODY);
+  }
+
+  @Test
+  public void headers_sampled() throws Exception {
+    OkHttpClient client = newClient(new HttpLogInterceptor(HttpLogInterceptor.Level.HEADERS, 3, 0L, logs::add));
+    for (int i = 0; i < 4; i++) {
+      mockWebServer.enqueue(new MockResponse().setBody(BODY));
+      assertThat(call(client)).isEqualTo(BODY);
+    }
+
+    int requests = 0;
+    for (String line : logs) {
+      if (line.startsWith("--> GET")) {
+        requests++;
+      }
+    }
+    assertThat(requests).isEqualTo(2);
+    assertThat(logs).doesNotContain(BODY);
+  }
+
+  @Test
+  public void none_logsNothing() throws Exception {
+    OkHttpClient client = newClient(new HttpLogInterceptor(HttpLogInterceptor.Level.NONE, 1, 10L, logs::add));
+    mockWebServer.enqueue(new MockResponse().setBody(BODY));
+
+    assertThat(call(client)).isEqualTo(BODY);
+    assertThat(logs).isEmpty();
+  }
+
+  private OkHttpClient newClient(HttpLogInterceptor interceptor) {
+    return new OkHttpClient.Builder()
+        .addInterceptor(interceptor)
+        .build();
+  }
+
+  private String call(OkHttpClient client) throws IOException {
+    Request request = new Request.Builder().url(mockWebServer.url("/users/srym/repos")).build();
+    try (Response response = client.newCall(request).execute()) {
+      return response.body().string();
+    }
+  }
+}
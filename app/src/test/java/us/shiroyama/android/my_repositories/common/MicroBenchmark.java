@@ -0,0 +1,90 @@
+package us.shiroyama.android.my_repositories.common;
+
+import android.support.annotation.NonNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Minimal micro-benchmark harness for the <code>*Benchmark</code> classes,
+ * which are left out of the unit test run unless Gradle is given <code>-Pbenchmark</code>:
+ * <pre>
+ * ./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark'
+ * </pre>
+ * Allocations are counted per thread by HotSpot's {@link com.sun.management.ThreadMXBean}.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public final class MicroBenchmark {
+  private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final int warmUp;
+
+  private final int iterations;
+
+  public MicroBenchmark(int warmUp, int iterations) {
+    this.warmUp = warmUp;
+    this.iterations = iterations;
+  }
+
+  /**
+   * Runs the operation <code>warmUp</code> times to let the JIT settle, then measures <code>iterations</code> runs
+   */
+  @NonNull
+  public Result measure(@NonNull String name, @NonNull Operation operation) throws Exception {
+    Object sink = null;
+    for (int i = 0; i < warmUp; i++) {
+      sink = operation.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+    long startedAt = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      sink = operation.run();
+    }
+    long elapsedNanos = System.nanoTime() - startedAt;
+    long allocatedBytes = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    Result result = new Result(name, elapsedNanos / iterations, allocatedBytes / iterations, sink);
+    System.out.println(result);
+    return result;
+  }
+
+  /**
+   * Measured operation, whose result is kept so the JIT cannot drop the work
+   */
+  public interface Operation {
+    Object run() throws Exception;
+  }
+
+  public static final class Result {
+    @NonNull
+    private final String name;
+
+    private final long nanosPerOp;
+
+    private final long bytesPerOp;
+
+    private final int sinkHash;
+
+    Result(@NonNull String name, long nanosPerOp, long bytesPerOp, Object sink) {
+      this.name = name;
+      this.nanosPerOp = nanosPerOp;
+      this.bytesPerOp = bytesPerOp;
+      this.sinkHash = System.identityHashCode(sink);
+    }
+
+    public long getNanosPerOp() {
+      return nanosPerOp;
+    }
+
+    public long getBytesPerOp() {
+      return bytesPerOp;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US, "%s: %,d ns/op, %,d B/op (sink %x)", name, nanosPerOp, bytesPerOp, sinkHash);
+    }
+  }
+}
@@ -4,22 +4,34 @@ import com.squareup.otto.Bus;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.threeten.bp.ZonedDateTime;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import us.shiroyama.android.my_repositories.common.CancellationToken;
 import us.shiroyama.android.my_repositories.domain.mapper.RepositoryMapper;
 import us.shiroyama.android.my_repositories.domain.usecase.executor.Task;
 import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskQueue;
+import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskTicket;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
 import us.shiroyama.android.my_repositories.infrastructure.repository.GitHubRepository;
+import us.shiroyama.android.my_repositories.infrastructure.repository.RefreshedRepositories;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.RepositoryPage;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RepositoryListOptions;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -71,6 +83,19 @@ public class GetRepositoriesTest {
     verify(taskQueue, times(1)).enqueue(any());
   }
 
+  /**
+   * Concurrent requests with an equal param attach to the task already in flight.
+   */
+  @Test
+  public void enqueue_duplicate_coalesced() throws Exception {
+    getRepositories.enqueue(GetRepositories.Param.newInstance("srym"));
+    getRepositories.enqueue(GetRepositories.Param.newInstance("srym"));
+    verify(taskQueue, times(1)).enqueue(any());
+
+    getRepositories.enqueue(GetRepositories.Param.newInstance("srym", true));
+    verify(taskQueue, times(2)).enqueue(any());
+  }
+
   /**
    * {@link GetRepositories#buildTask(Object)} のテスト
    * これで組み立てた {@link Task#run()} を呼んでやることで、依存関係のライブラリが内部的に呼ばれたかどうかを<code>verify()</code>できる。
@@ -79,21 +104,22 @@ public class GetRepositoriesTest {
    */
   @Test
   public void buildTask_noRefresh_success() throws Exception {
+    runEnqueuedTasksImmediately();
     GetRepositories.Param param = GetRepositories.Param.newInstance("srym");
     /*
     List<RepositoryEntity> list = new ArrayList();
 
     when(mapper.convertList(list)).thenReturn(null);
-    when(repository.getUserRepositories("srym")).thenReturn(null);
+    when(repository.getUserRepositories("srym", RepositoryListOptions.DEFAULT)).thenReturn(null);
 */
     getRepositories.buildTask(param).run();
 
     /*
     verify(mapper, times(1)).convertList(null);
-    verify(repository, times(1)).getUserRepositories(any());
+    verify(repository, times(1)).getUserRepositories(any(), any());
     */
-    verify(repository, times(1)).getUserRepositories(eq("srym"));
-    verify(repository, never()).refreshUserRepositories(eq("srym"));
+    verify(repository, times(1)).getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    verify(repository, never()).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
     verify(mapper, never()).convert(any());
     verify(mapper, times(1)).convertList(anyList());
     verify(bus, times(1)).post(any(GetRepositories.OnSuccessGetRepositories.class));
@@ -104,7 +130,7 @@ public class GetRepositoriesTest {
    * {@link GetRepositories#buildTask(Object)} のテスト
    * これで組み立てた {@link Task#run()} を呼んでやることで、依存関係のライブラリが内部的に呼ばれたかどうかを<code>verify()</code>できる。
    * <p>
-   * ここではパラメータが<code>GetRepositories.Param.newInstance("srym")</code>の場合で {@link GitHubRepository#getUserRepositories(String)} でエラーがおきた場合のテストを書いてみよう。
+   * ここではパラメータが<code>GetRepositories.Param.newInstance("srym")</code>の場合で {@link GitHubRepository#getUserRepositories(String, RepositoryListOptions)} でエラーがおきた場合のテストを書いてみよう。
    */
   @Test
   public void buildTask_noRefresh_error() throws Exception {
@@ -114,14 +140,14 @@ public class GetRepositoriesTest {
 
     when(mapper.convertList(list)).thenReturn(null);
     */
-    when(repository.getUserRepositories("srym")).thenThrow(new ApiException());
-//    doThrow(new ApiException()).when(repository).refreshUserRepositories(eq("srym"));
+    when(repository.getUserRepositories("srym", RepositoryListOptions.DEFAULT)).thenThrow(new ApiException());
+//    doThrow(new ApiException()).when(repository).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
 
     getRepositories.buildTask(param).run();
 
 //    verify(bus, times(1)).post(any());
-    verify(repository, times(1)).getUserRepositories(eq("srym"));
-    verify(repository, never()).refreshUserRepositories(eq("srym"));
+    verify(repository, times(1)).getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    verify(repository, never()).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
     verify(mapper, never()).convert(any());
     verify(mapper, never()).convertList(anyList());
     verify(bus, times(1)).post(any(GetRepositories.OnFailureGetRepositories.class));
@@ -135,18 +161,20 @@ public class GetRepositoriesTest {
    */
   @Test
   public void buildTask_refresh_success() throws Exception {
+    runEnqueuedTasksImmediately();
     GetRepositories.Param param = GetRepositories.Param.newInstance("srym", true);
     /*
     List<RepositoryEntity> list = new ArrayList();
 
     when(mapper.convertList(list)).thenReturn(null);
-    when(repository.refreshUserRepositories("srym")).thenReturn(null);
+    when(repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT)).thenReturn(null);
 */
+    when(repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT)).thenReturn(RefreshedRepositories.fresh(new ArrayList<>()));
     getRepositories.buildTask(param).run();
 
 //    verify(bus, times(1)).post(any());
-    verify(repository, times(1)).refreshUserRepositories(eq("srym"));
-    verify(repository, never()).getUserRepositories(eq("srym"));
+    verify(repository, times(1)).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    verify(repository, never()).getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
     verify(mapper, never()).convert(any());
     verify(mapper, times(1)).convertList(anyList());
     verify(bus, times(1)).post(any(GetRepositories.OnSuccessGetRepositories.class));
@@ -156,7 +184,7 @@ public class GetRepositoriesTest {
    * {@link GetRepositories#buildTask(Object)} のテスト
    * これで組み立てた {@link Task#run()} を呼んでやることで、依存関係のライブラリが内部的に呼ばれたかどうかを<code>verify()</code>できる。
    * <p>
-   * ここではパラメータが<code>GetRepositories.Param.newInstance("srym")</code>の場合で {@link GitHubRepository#refreshUserRepositories(String)} でエラーがおきた場合のテストを書いてみよう。
+   * ここではパラメータが<code>GetRepositories.Param.newInstance("srym")</code>の場合で {@link GitHubRepository#refreshUserRepositories(String, RepositoryListOptions)} でエラーがおきた場合のテストを書いてみよう。
    */
   @Test
   public void buildTask_refresh_error() throws Exception {
@@ -166,17 +194,264 @@ public class GetRepositoriesTest {
 
     when(mapper.convertList(list)).thenReturn(null);
     */
-    when(repository.refreshUserRepositories("srym")).thenThrow(new ApiException());
-//    doThrow(new ApiException()).when(repository).refreshUserRepositories(eq("srym"));
+    when(repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT)).thenThrow(new ApiException());
+//    doThrow(new ApiException()).when(repository).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
 
     getRepositories.buildTask(param).run();
 
 //    verify(bus, times(1)).post(any());
-    verify(repository, times(1)).refreshUserRepositories(eq("srym"));
-    verify(repository, never()).getUserRepositories(eq("srym"));
+    verify(repository, times(1)).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    verify(repository, never()).getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
     verify(mapper, never()).convert(any());
     verify(mapper, never()).convertList(anyList());
     verify(bus, times(1)).post(any(GetRepositories.OnFailureGetRepositories.class));
   }
 
-}
\ No newline at end of file
+  /**
+   * A refresh rejected by the rate limit fails with the exception carrying the reset time.
+   */
+  @Test
+  public void buildTask_refresh_rateLimited_postsResetTime() throws Exception {
+    when(repository.refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenThrow(new RateLimitException(1516944063000L));
+    ArgumentCaptor<GetRepositories.OnFailureGetRepositories> captor = ArgumentCaptor.forClass(GetRepositories.OnFailureGetRepositories.class);
+
+    getRepositories.buildTask(GetRepositories.Param.newInstance("srym", true)).run();
+
+    verify(bus, times(1)).post(captor.capture());
+    assertThat(captor.getValue().getItem()).isInstanceOf(RateLimitException.class);
+    assertThat(((RateLimitException) captor.getValue().getItem()).getResetAtMillis()).isEqualTo(1516944063000L);
+  }
+
+  /**
+   * Cached repositories served by the repository while the circuit is open are posted flagged as stale instead of an error.
+   */
+  @Test
+  public void buildTask_refresh_circuitOpen_postsStaleCache() throws Exception {
+    runEnqueuedTasksImmediately();
+    when(repository.refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RefreshedRepositories.stale(new ArrayList<>()));
+    List<Object> posted = new ArrayList<>();
+    doAnswer(invocation -> posted.add(invocation.getArgument(0))).when(bus).post(any());
+
+    getRepositories.buildTask(GetRepositories.Param.newInstance("srym", true)).run();
+
+    verify(repository, never()).getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    assertThat(posted).hasSize(1);
+    assertThat(posted.get(0)).isInstanceOf(GetRepositories.OnSuccessGetRepositories.class);
+    assertThat(((GetRepositories.OnSuccessGetRepositories) posted.get(0)).isStale()).isTrue();
+  }
+
+  /**
+   * An incremental refresh merges only the delta and leaves the full refresh alone.
+   */
+  @Test
+  public void buildTask_incrementalRefresh_success() throws Exception {
+    runEnqueuedTasksImmediately();
+    when(repository.refreshUserRepositoriesIncrementally(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RefreshedRepositories.fresh(new ArrayList<>()));
+
+    getRepositories.buildTask(GetRepositories.Param.incrementalRefresh("srym", RepositoryListOptions.DEFAULT)).run();
+
+    verify(repository, times(1)).refreshUserRepositoriesIncrementally(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    verify(repository, never()).refreshUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    verify(bus, times(1)).post(any(GetRepositories.OnSuccessGetRepositories.class));
+  }
+
+  /**
+   * Stale cache is posted first and then revalidated in the background.
+   */
+  @Test
+  public void buildTask_noRefresh_stale_enqueueRevalidation() throws Exception {
+    runEnqueuedTasksImmediately();
+    when(repository.isStale(eq("srym"))).thenReturn(true);
+
+    getRepositories.buildTask(GetRepositories.Param.newInstance("srym")).run();
+
+    verify(bus, times(1)).post(any(GetRepositories.OnSuccessGetRepositories.class));
+    // mapping and revalidation
+    verify(taskQueue, times(2)).enqueue(any(Task.class));
+    verify(repository, times(1)).revalidateUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+  }
+
+  /**
+   * Revalidation posts again only when the remote list has changed.
+   */
+  @Test
+  public void buildRevalidationTask() throws Exception {
+    runEnqueuedTasksImmediately();
+    when(repository.revalidateUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(null);
+    getRepositories.buildRevalidationTask("srym", RepositoryListOptions.DEFAULT, new CancellationToken()).run();
+    verify(bus, never()).post(any());
+
+    when(repository.revalidateUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RefreshedRepositories.fresh(new ArrayList<>()));
+    getRepositories.buildRevalidationTask("srym", RepositoryListOptions.DEFAULT, new CancellationToken()).run();
+    verify(bus, times(1)).post(any(GetRepositories.OnSuccessGetRepositories.class));
+  }
+
+  /**
+   * A paged load posts each page with the param of the next one, and following pages are appended.
+   */
+  @Test
+  public void buildTask_paged_postsPagesWithNext() throws Exception {
+    runEnqueuedTasksImmediately();
+    RepositoryPage.Cursor cursor = new RepositoryPage.Cursor(1516944063L, 5681402L);
+    when(repository.getUserRepositoriesPage(eq("srym"), isNull(), eq(2))).thenReturn(new RepositoryPage(Collections.emptyList(), cursor));
+    when(repository.getUserRepositoriesPage(eq("srym"), eq(cursor), eq(2))).thenReturn(RepositoryPage.empty());
+    ArgumentCaptor<GetRepositories.OnSuccessGetRepositories> captor = ArgumentCaptor.forClass(GetRepositories.OnSuccessGetRepositories.class);
+
+    getRepositories.buildTask(GetRepositories.Param.firstPage("srym", 2)).run();
+
+    verify(bus, times(1)).post(captor.capture());
+    GetRepositories.OnSuccessGetRepositories firstPage = captor.getValue();
+    assertThat(firstPage.isAppended()).isFalse();
+    assertThat(firstPage.getNext()).isNotNull();
+    verify(repository, never()).getUserRepositories(any(), any());
+
+    getRepositories.buildTask(firstPage.getNext()).run();
+
+    verify(bus, times(2)).post(captor.capture());
+    GetRepositories.OnSuccessGetRepositories secondPage = captor.getValue();
+    assertThat(secondPage.isAppended()).isTrue();
+    assertThat(secondPage.getNext()).isNull();
+  }
+
+  /**
+   * Revalidation must not delay user initiated loads.
+   */
+  @Test
+  public void buildTask_priority() throws Exception {
+    assertThat(getRepositories.buildTask(GetRepositories.Param.newInstance("srym")).getPriority()).isEqualTo(Task.Priority.INTERACTIVE);
+    assertThat(getRepositories.buildTask(GetRepositories.Param.newInstance("srym", true)).getPriority()).isEqualTo(Task.Priority.REFRESH);
+    assertThat(getRepositories.buildRevalidationTask("srym", RepositoryListOptions.DEFAULT, new CancellationToken()).getPriority()).isEqualTo(Task.Priority.BACKGROUND);
+  }
+
+  /**
+   * Loading blocks on I/O while mapping is CPU bound.
+   */
+  @Test
+  public void buildTask_pool() throws Exception {
+    assertThat(getRepositories.buildTask(GetRepositories.Param.newInstance("srym")).getPool()).isEqualTo(Task.Pool.IO);
+    assertThat(getRepositories.buildMappingTask("srym", new ArrayList<>(), Task.Priority.INTERACTIVE, new CancellationToken(), false).getPool()).isEqualTo(Task.Pool.COMPUTE);
+  }
+
+  /**
+   * A task cancelled while loading neither maps nor posts anything.
+   */
+  @Test
+  public void buildTask_cancelled_noPost() throws Exception {
+    runEnqueuedTasksImmediately();
+    Task task = getRepositories.buildTask(GetRepositories.Param.newInstance("srym"));
+    when(repository.getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenAnswer(invocation -> {
+      task.cancel();
+      return new ArrayList<>();
+    });
+
+    task.run();
+
+    verify(mapper, never()).convertList(anyList());
+    verify(bus, never()).post(any());
+  }
+
+  /**
+   * A ticket cancelled after the I/O stage has completed its future still stops the mapping stage sharing its token.
+   */
+  @Test
+  public void enqueue_cancelledAfterLoading_noPost() throws Exception {
+    List<Task> enqueued = new ArrayList<>();
+    Future<?> completed = mock(Future.class);
+    when(completed.isDone()).thenReturn(true);
+    when(taskQueue.enqueue(any(Task.class))).thenAnswer(invocation -> {
+      enqueued.add(invocation.getArgument(0));
+      return completed;
+    });
+    when(repository.getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(new ArrayList<>());
+
+    TaskTicket ticket = getRepositories.enqueue(GetRepositories.Param.newInstance("srym"));
+    enqueued.get(0).run();
+    assertThat(enqueued).hasSize(2);
+
+    ticket.cancel(true);
+    enqueued.get(1).run();
+
+    verify(bus, never()).post(any());
+  }
+
+  /**
+   * Leaving the screen before the background revalidation runs stops it, so it can no longer replace the list.
+   */
+  @Test
+  public void enqueue_cancelledBeforeRevalidation_noRevalidation() throws Exception {
+    List<Task> enqueued = new ArrayList<>();
+    when(taskQueue.enqueue(any(Task.class))).thenAnswer(invocation -> {
+      enqueued.add(invocation.getArgument(0));
+      return mock(Future.class);
+    });
+    when(repository.getUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(new ArrayList<>());
+    when(repository.isStale(eq("srym"))).thenReturn(true);
+
+    TaskTicket ticket = getRepositories.enqueue(GetRepositories.Param.newInstance("srym"));
+    enqueued.get(0).run();
+    // mapping and revalidation
+    assertThat(enqueued).hasSize(3);
+    Task revalidation = enqueued.get(2);
+    assertThat(revalidation.getPriority()).isEqualTo(Task.Priority.BACKGROUND);
+
+    ticket.cancel(true);
+    assertThat(revalidation.isCancelled()).isTrue();
+    revalidation.run();
+
+    verify(repository, never()).revalidateUserRepositories(any(), any());
+    verify(bus, never()).post(any());
+  }
+
+  /**
+   * Posted repositories tell whose they are, so a screen which has switched accounts can drop them.
+   */
+  @Test
+  public void buildRevalidationTask_postsAccount() throws Exception {
+    runEnqueuedTasksImmediately();
+    when(repository.revalidateUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RefreshedRepositories.fresh(new ArrayList<>()));
+    ArgumentCaptor<GetRepositories.OnSuccessGetRepositories> captor = ArgumentCaptor.forClass(GetRepositories.OnSuccessGetRepositories.class);
+
+    getRepositories.buildRevalidationTask("srym", RepositoryListOptions.DEFAULT, new CancellationToken()).run();
+
+    verify(bus, times(1)).post(captor.capture());
+    assertThat(captor.getValue().getAccount()).isEqualTo("srym");
+  }
+
+  /**
+   * A revalidated paged list is posted again only if its first page has changed, as an update of the pages shown.
+   */
+  @Test
+  public void buildRevalidationTask_paged_postsChangedFirstPageOnly() throws Exception {
+    runEnqueuedTasksImmediately();
+    RepositoryEntity dotfiles = newRepositoryEntity(5681402L, "2018-01-26T05:21:03Z");
+    RepositoryPage shown = new RepositoryPage(Collections.singletonList(dotfiles), null);
+    when(repository.revalidateUserRepositories(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RefreshedRepositories.fresh(new ArrayList<>()));
+    when(repository.getUserRepositoriesPage(eq("srym"), isNull(), eq(1))).thenReturn(new RepositoryPage(Collections.singletonList(newRepositoryEntity(5681402L, "2018-01-26T05:21:03Z")), null));
+    ArgumentCaptor<GetRepositories.OnSuccessGetRepositories> captor = ArgumentCaptor.forClass(GetRepositories.OnSuccessGetRepositories.class);
+
+    getRepositories.buildRevalidationTask("srym", RepositoryListOptions.DEFAULT, 1, shown, new CancellationToken()).run();
+    verify(bus, never()).post(any());
+
+    when(repository.getUserRepositoriesPage(eq("srym"), isNull(), eq(1))).thenReturn(new RepositoryPage(Collections.singletonList(newRepositoryEntity(5681402L, "2018-02-01T00:00:00Z")), null));
+    getRepositories.buildRevalidationTask("srym", RepositoryListOptions.DEFAULT, 1, shown, new CancellationToken()).run();
+    verify(bus, times(1)).post(captor.capture());
+    assertThat(captor.getValue().isFirstPageUpdate()).isTrue();
+    assertThat(captor.getValue().isAppended()).isFalse();
+  }
+
+  private RepositoryEntity newRepositoryEntity(long id, String updatedAt) {
+    ZonedDateTime createdAt = ZonedDateTime.parse("2012-09-05T02:17:05Z");
+    return new RepositoryEntity(id, "dotfiles", "srym/dotfiles", "https://github.com/srym/dotfiles", false, "", null, createdAt, ZonedDateTime.parse(updatedAt), createdAt);
+  }
+
+  /**
+   * Makes the mocked {@link TaskQueue} run enqueued stages such as mapping synchronously.
+   */
+  private void runEnqueuedTasksImmediately() {
+    when(taskQueue.enqueue(any(Task.class))).thenAnswer(invocation -> {
+      invocation.<Task>getArgument(0).run();
+      return null;
+    });
+  }
+
+}
@@ -0,0 +1,80 @@
+package us.shiroyama.android.my_repositories.domain.usecase;
+
+import com.squareup.otto.Bus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import us.shiroyama.android.my_repositories.domain.mapper.RepositoryMapper;
+import us.shiroyama.android.my_repositories.domain.usecase.executor.Task;
+import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskQueue;
+import us.shiroyama.android.my_repositories.infrastructure.repository.GitHubRepository;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local Unit Test for {@link SearchRepositories}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class SearchRepositoriesTest {
+  private Bus bus;
+  private GitHubRepository repository;
+  private RepositoryMapper mapper;
+  private SearchRepositories searchRepositories;
+
+  @Before
+  public void setUp() throws Exception {
+    bus = mock(Bus.class);
+    repository = mock(GitHubRepository.class);
+    mapper = mock(RepositoryMapper.class);
+    searchRepositories = new SearchRepositories(mock(TaskQueue.class), bus, repository, mapper);
+  }
+
+  @Test
+  public void buildTask_success() throws Exception {
+    searchRepositories.buildTask(SearchRepositories.Param.newInstance("droid", 20)).run();
+
+    verify(repository, times(1)).searchRepositories(eq("droid"), eq(20));
+    verify(mapper, times(1)).convertList(anyList());
+    verify(bus, times(1)).post(any(SearchRepositories.OnSuccessSearchRepositories.class));
+  }
+
+  @Test
+  public void buildTask_error() throws Exception {
+    when(repository.searchRepositories(anyString(), anyInt())).thenThrow(new IllegalStateException());
+
+    searchRepositories.buildTask(SearchRepositories.Param.newInstance("droid")).run();
+
+    verify(bus, times(1)).post(any(SearchRepositories.OnFailureSearchRepositories.class));
+  }
+
+  /**
+   * A search superseded by the next query never posts
+   */
+  @Test
+  public void buildTask_cancelled_noPost() throws Exception {
+    Task task = searchRepositories.buildTask(SearchRepositories.Param.newInstance("droid"));
+    when(repository.searchRepositories(anyString(), anyInt())).thenAnswer(invocation -> {
+      task.cancel();
+      return new ArrayList<>();
+    });
+
+    task.run();
+
+    verify(mapper, never()).convertList(anyList());
+    verify(bus, never()).post(any());
+  }
+}
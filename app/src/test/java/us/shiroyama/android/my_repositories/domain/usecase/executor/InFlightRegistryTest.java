@@ -0,0 +1,84 @@
+package us.shiroyama.android.my_repositories.domain.usecase.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link InFlightRegistry}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class InFlightRegistryTest {
+  private ExecutorService executorService;
+  private TaskQueue taskQueue;
+  private InFlightRegistry registry;
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicInteger runs = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    executorService = Executors.newSingleThreadExecutor();
+    taskQueue = new TaskQueue(executorService);
+    registry = new InFlightRegistry();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void enqueue_sameKey_sharesTask() throws Exception {
+    TaskTicket first = registry.enqueue("srym", taskQueue, blockingTask());
+    TaskTicket second = registry.enqueue("srym", taskQueue, blockingTask());
+    assertThat(second.getTaskId()).isEqualTo(first.getTaskId());
+    assertThat(second.getFuture()).isSameAs(first.getFuture());
+
+    release.countDown();
+    first.getFuture().get(1, TimeUnit.SECONDS);
+    assertThat(runs.get()).isEqualTo(1);
+    assertThat(registry.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void cancel_keepsTaskUntilLastCaller() throws Exception {
+    TaskTicket first = registry.enqueue("srym", taskQueue, blockingTask());
+    TaskTicket second = registry.enqueue("srym", taskQueue, blockingTask());
+
+    first.cancel(true);
+    // cancelling the same ticket twice must not release the other caller's share
+    first.cancel(true);
+    assertThat(first.getFuture().isCancelled()).isFalse();
+    assertThat(registry.size()).isEqualTo(1);
+
+    second.cancel(true);
+    assertThat(second.getFuture().isCancelled()).isTrue();
+    assertThat(registry.size()).isEqualTo(0);
+  }
+
+  private Task blockingTask() {
+    return new Task() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,121 @@
+package us.shiroyama.android.my_repositories.domain.usecase.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link PriorityTaskExecutor}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class PriorityTaskExecutorTest {
+  private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private long now;
+  private PriorityTaskExecutor executor;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = new PriorityTaskExecutor(1) {
+      @Override
+      long nanoTime() {
+        return now;
+      }
+    };
+    // occupy the only thread so that following tasks stay in the queue
+    executor.submit(new Task() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void interactiveRunsBeforeQueuedBackgroundWork() throws Exception {
+    executor.submit(task("background", Task.Priority.BACKGROUND));
+    executor.submit(task("refresh", Task.Priority.REFRESH));
+    executor.submit(task("interactive1", Task.Priority.INTERACTIVE));
+    Future<?> last = executor.submit(task("interactive2", Task.Priority.INTERACTIVE));
+
+    release.countDown();
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+    assertThat(last.isDone()).isTrue();
+    assertThat(executed).containsExactly("interactive1", "interactive2", "refresh", "background");
+  }
+
+  @Test
+  public void backgroundWorkAgesPastNewerInteractiveWork() throws Exception {
+    executor.submit(task("background", Task.Priority.BACKGROUND));
+    now += Task.Priority.BACKGROUND.getDelayNanos() + 1;
+    executor.submit(task("interactive", Task.Priority.INTERACTIVE));
+
+    release.countDown();
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+    assertThat(executed).containsExactly("background", "interactive");
+  }
+
+  @Test
+  public void interactiveWorkGrowsPoolPastBusyCoreThreads() throws Exception {
+    PriorityTaskExecutor elastic = new PriorityTaskExecutor(1, 2, 1L);
+    CountDownLatch blocked = new CountDownLatch(1);
+    try {
+      elastic.submit(new Task(Task.Priority.REFRESH) {
+        @Override
+        public void run() {
+          try {
+            blocked.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+      Future<?> background = elastic.submit(task("background", Task.Priority.BACKGROUND));
+      Future<?> interactive = elastic.submit(task("interactive", Task.Priority.INTERACTIVE));
+
+      // the only core thread is still blocked
+      interactive.get(1, TimeUnit.SECONDS);
+      assertThat(elastic.getPoolSize()).isEqualTo(2);
+
+      blocked.countDown();
+      background.get(1, TimeUnit.SECONDS);
+      assertThat(executed).containsExactly("interactive", "background");
+    } finally {
+      blocked.countDown();
+      elastic.shutdownNow();
+    }
+  }
+
+  private Task task(String name, Task.Priority priority) {
+    return new Task(priority) {
+      @Override
+      public void run() {
+        executed.add(name);
+      }
+    };
+  }
+}
@@ -0,0 +1,183 @@
+package us.shiroyama.android.my_repositories.domain.usecase.executor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import us.shiroyama.android.my_repositories.common.RateLimitBudget;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link TaskQueue}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class TaskQueueTest {
+  private MockWebServer mockWebServer;
+  private RateLimitBudget rateLimitBudget;
+  private ExecutorService executorService;
+  private ScheduledExecutorService scheduler;
+  private TaskQueue taskQueue;
+
+  @Before
+  public void setUp() throws Exception {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+    rateLimitBudget = new RateLimitBudget();
+    executorService = Executors.newSingleThreadExecutor();
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    taskQueue = new TaskQueue(executorService, executorService, rateLimitBudget, scheduler);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    scheduler.shutdownNow();
+    executorService.shutdownNow();
+    mockWebServer.shutdown();
+  }
+
+  /**
+   * Once a response reports a low budget, background work waits for the reset while interactive work still runs.
+   */
+  @Test(timeout = 10000L)
+  public void lowBudget_postponesBackgroundUntilReset() throws Exception {
+    long resetAtSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 2L;
+    reportBudget(5, resetAtSeconds);
+    assertThat(rateLimitBudget.isLow(TaskQueue.LOW_BUDGET_FRACTION)).isTrue();
+
+    CountDownLatch background = new CountDownLatch(1);
+    CountDownLatch interactive = new CountDownLatch(1);
+    taskQueue.enqueue(new Task(Task.Priority.BACKGROUND) {
+      @Override
+      public void run() {
+        background.countDown();
+      }
+    });
+    taskQueue.enqueue(new Task(Task.Priority.INTERACTIVE) {
+      @Override
+      public void run() {
+        interactive.countDown();
+      }
+    });
+
+    assertThat(interactive.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(background.getCount()).isEqualTo(1L);
+
+    background.await();
+    assertThat(System.currentTimeMillis()).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toMillis(resetAtSeconds));
+  }
+
+  /**
+   * A user initiated refresh is not held back by an exhausted budget, it fails fast with the reset time instead.
+   */
+  @Test
+  public void exhaustedBudget_runsRefreshRightAway() throws Exception {
+    reportBudget(0, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60L);
+    assertThat(rateLimitBudget.isExhausted()).isTrue();
+
+    CountDownLatch refresh = new CountDownLatch(1);
+    taskQueue.enqueue(new Task(Task.Priority.REFRESH) {
+      @Override
+      public void run() {
+        refresh.countDown();
+      }
+    });
+
+    assertThat(refresh.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  /**
+   * A postponed task keeps its key in flight until it is cancelled, and then never runs.
+   */
+  @Test(timeout = 10000L)
+  public void postponedBackground_staysInFlightAndCancellable() throws Exception {
+    reportBudget(0, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 2L);
+    InFlightRegistry registry = new InFlightRegistry();
+    CountDownLatch background = new CountDownLatch(1);
+
+    TaskTicket ticket = registry.enqueue("srym", taskQueue, new Task(Task.Priority.BACKGROUND) {
+      @Override
+      public void run() {
+        background.countDown();
+      }
+    });
+    // completes once the task has been postponed
+    ticket.getFuture().get(1, TimeUnit.SECONDS);
+    assertThat(registry.size()).isEqualTo(1);
+
+    ticket.cancel(true);
+    assertThat(registry.size()).isEqualTo(0);
+    // past the reset, when the postponed task is submitted again
+    assertThat(background.await(4, TimeUnit.SECONDS)).isFalse();
+  }
+
+  /**
+   * A queue built without an explicit budget postpones against the one the HTTP client updates.
+   */
+  @Test
+  public void defaultBudget_sharedWithHttpClient() throws Exception {
+    RateLimitBudget shared = RateLimitBudget.Factory.INSTANCE.get();
+    TaskQueue defaultQueue = new TaskQueue(executorService, executorService);
+    try {
+      reportBudget(shared, 5, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 2L);
+      CountDownLatch background = new CountDownLatch(1);
+      defaultQueue.enqueue(new Task(Task.Priority.BACKGROUND) {
+        @Override
+        public void run() {
+          background.countDown();
+        }
+      });
+
+      assertThat(background.await(500, TimeUnit.MILLISECONDS)).isFalse();
+    } finally {
+      // leaves the shared budget with headroom for other tests
+      reportBudget(shared, 60, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 2L);
+    }
+  }
+
+  @Test
+  public void unknownBudget_runsBackgroundRightAway() throws Exception {
+    CountDownLatch background = new CountDownLatch(1);
+    taskQueue.enqueue(new Task(Task.Priority.BACKGROUND) {
+      @Override
+      public void run() {
+        background.countDown();
+      }
+    });
+
+    assertThat(background.await(1, TimeUnit.SECONDS)).isTrue();
+  }
+
+  /**
+   * Feeds {@link RateLimitBudget} with the headers of a network response
+   */
+  private void reportBudget(int remaining, long resetAtSeconds) throws Exception {
+    reportBudget(rateLimitBudget, remaining, resetAtSeconds);
+  }
+
+  private void reportBudget(RateLimitBudget budget, int remaining, long resetAtSeconds) throws Exception {
+    mockWebServer.enqueue(new MockResponse()
+        .setHeader(RateLimitBudget.HEADER_LIMIT, "60")
+        .setHeader(RateLimitBudget.HEADER_REMAINING, String.valueOf(remaining))
+        .setHeader(RateLimitBudget.HEADER_RESET, String.valueOf(resetAtSeconds))
+        .setBody("[]"));
+    OkHttpClient client = new OkHttpClient.Builder()
+        .addNetworkInterceptor(budget.interceptor())
+        .build();
+    Response response = client.newCall(new Request.Builder().url(mockWebServer.url("/users/srym/repos")).build()).execute();
+    response.close();
+  }
+}
@@ -0,0 +1,66 @@
+package us.shiroyama.android.my_repositories.infrastructure.entity;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.common.GsonProvider;
+import us.shiroyama.android.my_repositories.common.MicroBenchmark;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark of {@link RepositoryRowsTypeAdapter}, which reads only the fields it stores and skips the rest,
+ * against the reflective decoding into {@link RepositoryEntity} it replaced.
+ * Both use the same {@link GsonProvider} timestamp adapter, so only the field-selective decoding differs.
+ * See {@link MicroBenchmark} for how to run it.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryRowsTypeAdapterBenchmark {
+  private static final int PAGE_SIZE = 100;
+
+  private final Type entityListType = new TypeToken<List<RepositoryEntity>>() {
+  }.getType();
+
+  @Test
+  public void decodeFullPage() throws Exception {
+    Gson gson = GsonProvider.INSTANCE.get();
+    String page = fullPage();
+    MicroBenchmark benchmark = new MicroBenchmark(500, 2000);
+
+    MicroBenchmark.Result reflective = benchmark.measure("reflective RepositoryEntity", () -> gson.fromJson(page, entityListType));
+    MicroBenchmark.Result streaming = benchmark.measure("streaming RepositoryRows", () -> gson.fromJson(page, RepositoryRows.class));
+
+    assertThat(streaming.getNanosPerOp()).isLessThan(reflective.getNanosPerOp());
+    assertThat(streaming.getBytesPerOp()).isLessThan(reflective.getBytesPerOp());
+  }
+
+  /**
+   * @return a page of {@link #PAGE_SIZE} recorded repositories as GitHub sends them with <code>per_page=100</code>
+   */
+  @NonNull
+  private String fullPage() {
+    JsonParser parser = new JsonParser();
+    JsonArray recorded = new JsonArray();
+    for (String fileName : new String[]{"users_srym_repos.json", "users_ymnder_repos.json"}) {
+      recorded.addAll(parser.parse(new InputStreamReader(getClass().getClassLoader().getResourceAsStream(fileName))).getAsJsonArray());
+    }
+    JsonArray page = new JsonArray();
+    for (int i = 0; i < PAGE_SIZE; i++) {
+      page.add(recorded.get(i % recorded.size()));
+    }
+    return page.toString();
+  }
+}
@@ -0,0 +1,74 @@
+package us.shiroyama.android.my_repositories.infrastructure.entity;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStreamReader;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.common.GsonProvider;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link RepositoryRowsTypeAdapter}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryRowsTypeAdapterTest {
+  private Gson gson;
+  private List<RepositoryEntity> entities;
+  private RepositoryRows rows;
+
+  @Before
+  public void setUp() throws Exception {
+    gson = GsonProvider.INSTANCE.get();
+    entities = gson.fromJson(read(), new TypeToken<List<RepositoryEntity>>() {
+    }.getType());
+    rows = gson.fromJson(read(), RepositoryRows.class);
+  }
+
+  @Test
+  public void read_sameAsEntities() throws Exception {
+    assertThat(rows.getRepositories()).hasSize(entities.size());
+    for (int i = 0; i < entities.size(); i++) {
+      RepositoryEntity expected = entities.get(i);
+      RoomRepositoryEntity actual = rows.getRepositories().get(i);
+      assertThat(actual.getId()).isEqualTo(expected.getId());
+      assertThat(actual.getName()).isEqualTo(expected.getName());
+      assertThat(actual.getFullName()).isEqualTo(expected.getFullName());
+      assertThat(actual.getHtmlUrl()).isEqualTo(expected.getHtmlUrl());
+      assertThat(actual.isPrivate()).isEqualTo(expected.isPrivate());
+      assertThat(actual.getDescription()).isEqualTo(expected.getDescription());
+      assertThat(actual.getAccountId()).isEqualTo(expected.getOwner().getId());
+      assertThat(actual.getCreatedAt()).isEqualTo(expected.getCreatedAt());
+      assertThat(actual.getUpdatedAt()).isEqualTo(expected.getUpdatedAt());
+      assertThat(actual.getPushedAt()).isEqualTo(expected.getPushedAt());
+    }
+  }
+
+  @Test
+  public void read_deduplicatesOwners() throws Exception {
+    AccountEntity owner = entities.get(0).getOwner();
+    assertThat(rows.getAccounts()).containsExactly(new RoomAccountEntity(owner.getId(), owner.getLogin(), owner.getAvatarUrl(), owner.getUrl()));
+  }
+
+  @Test
+  public void write_readBack() throws Exception {
+    RepositoryRows readBack = gson.fromJson(gson.toJson(rows, RepositoryRows.class), RepositoryRows.class);
+    assertThat(readBack.getRepositories()).hasSameSizeAs(rows.getRepositories());
+    assertThat(readBack.getRepositories().get(0).getUpdatedAt()).isEqualTo(rows.getRepositories().get(0).getUpdatedAt());
+    assertThat(readBack.getAccounts()).isEqualTo(rows.getAccounts());
+  }
+
+  private InputStreamReader read() {
+    return new InputStreamReader(getClass().getClassLoader().getResourceAsStream("users_srym_repos.json"));
+  }
+}
@@ -2,25 +2,31 @@ package us.shiroyama.android.my_repositories.infrastructure.repository;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.threeten.bp.ZonedDateTime;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-import us.shiroyama.android.my_repositories.infrastructure.entity.AccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.exception.CircuitOpenException;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.GitHubLocalDataSource;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountSyncEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.GitHubRemoteDataSource;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RemoteRepositories;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.RepositoryListOptions;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -80,7 +86,7 @@ public class GitHubInfraRepositoryTest {
   }
 
   /**
-   * {@link GitHubInfraRepository#getUserRepositories(String)}のテスト
+   * {@link GitHubInfraRepository#getUserRepositories(String, RepositoryListOptions)}のテスト
    * <p>
    * ローカルデータソースにデータがあった場合のテストを書こう。
    * その際、リモートデータソースの呼び出しは行われないことも同時に検証しよう。
@@ -88,14 +94,14 @@ public class GitHubInfraRepositoryTest {
   @Test
   public void getUserRepositories_localDataSource_hit() throws Exception {
     when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(Collections.singletonList(new RepositoryEntity()));
-    assertThat(repository.getUserRepositories("srym")).isNotEmpty();
+    assertThat(repository.getUserRepositories("srym", RepositoryListOptions.DEFAULT)).isNotEmpty();
 
-    verify(remoteDataSource, never()).getUserRepositories(anyString());
+    verify(remoteDataSource, never()).getUserRepositoriesPreferringCache(anyString(), any());
     verify(localDataSource, never()).insertRepositoriesAndAccounts(anyList(), anyList());
   }
 
   /**
-   * {@link GitHubInfraRepository#getUserRepositories(String)}のテスト
+   * {@link GitHubInfraRepository#getUserRepositories(String, RepositoryListOptions)}のテスト
    * <p>
    * ローカルデータソースも空っぽで、リモートデータソースの結果も空っぽの場合のテストを書こう。
    * 同じく、インタラクションが行われないメソッドはそれも検証しよう。
@@ -103,14 +109,15 @@ public class GitHubInfraRepositoryTest {
   @Test
   public void getUserRepositories_localDataSource_not_hit_and_remoteDataSource_empty() throws Exception {
     when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(null);
-    when(remoteDataSource.getUserRepositories(eq("srym"))).thenReturn(null);
-    assertThat(repository.getUserRepositories("srym")).isEmpty();
+    when(remoteDataSource.getUserRepositoriesPreferringCache(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RemoteRepositories.of(RepositoryRows.empty(), null, null));
+    assertThat(repository.getUserRepositories("srym", RepositoryListOptions.DEFAULT)).isEmpty();
 
     verify(localDataSource, never()).insertRepositoriesAndAccounts(anyList(), anyList());
+    verify(localDataSource, times(1)).saveAccountSync(any(RoomAccountSyncEntity.class));
   }
 
   /**
-   * {@link GitHubInfraRepository#getUserRepositories(String)}のテスト
+   * {@link GitHubInfraRepository#getUserRepositories(String, RepositoryListOptions)}のテスト
    * <p>
    * ローカルデータソースは空っぽだが、リモートデータソースが結果を返してくれた場合のテストを書こう。
    * リモートデータソースが取得できた場合はローカルデータソースへの書き込みがあるはずなのでそれも検証しよう。
@@ -118,46 +125,149 @@ public class GitHubInfraRepositoryTest {
   @Test
   public void getUserRepositories_localDataSource_not_hit_and_remoteDataSource_hit() throws Exception {
     when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(null);
-    List<RepositoryEntity> ret = new ArrayList();
-    RoomRepositoryEntity tmp = repositoriesSrym.get(0);
-    ret.add(new RepositoryEntity(tmp.getId(), tmp.getName(), tmp.getFullName(), tmp.getHtmlUrl(), tmp.isPrivate(),
-                    tmp.getDescription(), new AccountEntity(srym.getId(), srym.getLogin(), srym.getAvatarUrl(), srym.getUrl()),
-                    tmp.getCreatedAt(), tmp.getUpdatedAt(), tmp.getPushedAt()));
-    when(remoteDataSource.getUserRepositories(eq("srym"))).thenReturn(ret);
-
-    assertThat(repository.getUserRepositories("srym")).isNotEmpty();
+    RepositoryRows ret = new RepositoryRows(repositoriesSrym.subList(0, 1), Collections.singletonList(srym));
+    when(remoteDataSource.getUserRepositoriesPreferringCache(eq("srym"), eq(RepositoryListOptions.DEFAULT))).thenReturn(RemoteRepositories.of(ret, "\"etag\"", null));
+
+    assertThat(repository.getUserRepositories("srym", RepositoryListOptions.DEFAULT)).isNotEmpty();
     verify(localDataSource, times(1)).insertRepositoriesAndAccounts(anyList(), anyList());
+    verify(localDataSource, times(1)).saveAccountSync(any(RoomAccountSyncEntity.class));
   }
 
   /**
-   * {@link GitHubInfraRepository#refreshUserRepositories(String)}のテスト
+   * {@link GitHubInfraRepository#refreshUserRepositories(String, RepositoryListOptions)}のテスト
    * <p>
    * リモートデータソースが空を返した場合のテストを書こう。
    */
   @Test
   public void refreshUserRepositories_remoteDataSource_no_hit() throws Exception {
-    when(remoteDataSource.getUserRepositories(eq("srym"))).thenReturn(null);
+    when(remoteDataSource.getUserRepositoriesIfModified(eq("srym"), isNull(), isNull(), eq(RepositoryListOptions.DEFAULT))).thenReturn(RemoteRepositories.of(RepositoryRows.empty(), null, null));
 
-    assertThat(repository.refreshUserRepositories(eq("srym"))).isEmpty();
-    verify(localDataSource, never()).deleteAndInsertRepositoriesAndAccounts(anyString(), anyList(), anyList());
+    assertThat(repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT).getRepositories()).isEmpty();
+    // the last repositories of the account have been deleted
+    verify(localDataSource, times(1)).syncRepositoriesAndAccounts(eq("srym"), eq(Collections.emptyList()), eq(Collections.emptyList()));
+    verify(localDataSource, times(1)).saveAccountSync(any(RoomAccountSyncEntity.class));
   }
 
   /**
-   * {@link GitHubInfraRepository#refreshUserRepositories(String)}のテスト
+   * {@link GitHubInfraRepository#refreshUserRepositories(String, RepositoryListOptions)}のテスト
    * <p>
    * リモートデータソースが値を返した場合のテストを書こう。
    */
   @Test
   public void refreshUserRepositories_remoteDataSource_hit() throws Exception {
-    List<RepositoryEntity> ret = new ArrayList();
-    RoomRepositoryEntity tmp = repositoriesSrym.get(0);
-    ret.add(new RepositoryEntity(tmp.getId(), tmp.getName(), tmp.getFullName(), tmp.getHtmlUrl(), tmp.isPrivate(),
-            tmp.getDescription(), new AccountEntity(srym.getId(), srym.getLogin(), srym.getAvatarUrl(), srym.getUrl()),
-            tmp.getCreatedAt(), tmp.getUpdatedAt(), tmp.getPushedAt()));
-    when(remoteDataSource.getUserRepositories(eq("srym"))).thenReturn(ret);
-
-    assertThat(repository.refreshUserRepositories(eq("srym"))).isNotEmpty().hasSize(1);
-    verify(localDataSource, times(1)).deleteAndInsertRepositoriesAndAccounts(anyString(), anyList(), anyList());
+    RepositoryRows ret = new RepositoryRows(repositoriesSrym.subList(0, 1), Collections.singletonList(srym));
+    when(remoteDataSource.getUserRepositoriesIfModified(eq("srym"), isNull(), isNull(), eq(RepositoryListOptions.DEFAULT))).thenReturn(RemoteRepositories.of(ret, "\"etag\"", null));
+
+    assertThat(repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT).getRepositories()).isNotEmpty().hasSize(1);
+    verify(localDataSource, times(1)).syncRepositoriesAndAccounts(anyString(), anyList(), anyList());
+  }
+
+  /**
+   * {@link GitHubInfraRepository#refreshUserRepositories(String, RepositoryListOptions)} sends the stored ETag and
+   * only touches the last synced time on <code>304 Not Modified</code>.
+   */
+  @Test
+  public void refreshUserRepositories_remoteDataSource_notModified() throws Exception {
+    when(localDataSource.getAccountSync(eq("srym"))).thenReturn(new RoomAccountSyncEntity("srym", "\"etag\"", null, 0L));
+    when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(Collections.singletonList(new RepositoryEntity()));
+    when(remoteDataSource.getUserRepositoriesIfModified(eq("srym"), eq("\"etag\""), isNull(), eq(RepositoryListOptions.DEFAULT))).thenReturn(RemoteRepositories.notModified("\"etag\"", null));
+
+    assertThat(repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT).getRepositories()).hasSize(1);
+    verify(localDataSource, never()).syncRepositoriesAndAccounts(anyString(), anyList(), anyList());
+    verify(localDataSource, times(1)).saveAccountSync(any(RoomAccountSyncEntity.class));
+  }
+
+  /**
+   * {@link GitHubInfraRepository#revalidateUserRepositories(String, RepositoryListOptions)} requests another order from GitHub
+   * without the validators stored for the default one, and keeps those validators for the next default revalidation.
+   */
+  @Test
+  public void revalidateUserRepositories_otherOrder_requestsOtherOrder() throws Exception {
+    RepositoryListOptions byCreated = RepositoryListOptions.of(RepositoryListOptions.Sort.CREATED);
+    RepositoryRows ret = new RepositoryRows(Arrays.asList(repositoriesSrym.get(1), repositoriesSrym.get(0)), Collections.singletonList(srym));
+    when(localDataSource.getAccountSync(eq("srym"))).thenReturn(new RoomAccountSyncEntity("srym", "\"etag\"", null, 0L));
+    when(remoteDataSource.getUserRepositoriesIfModified(eq("srym"), isNull(), isNull(), eq(byCreated))).thenReturn(RemoteRepositories.of(ret, "\"created\"", null));
+    ArgumentCaptor<RoomAccountSyncEntity> accountSync = ArgumentCaptor.forClass(RoomAccountSyncEntity.class);
+
+    List<RepositoryEntity> revalidated = repository.revalidateUserRepositories("srym", byCreated).getRepositories();
+    assertThat(revalidated).hasSize(2);
+    assertThat(revalidated.get(0).getName()).isEqualTo("FirebaseRealTimeChat");
+    verify(remoteDataSource, never()).getUserRepositoriesIfModified(anyString(), any(), any(), eq(RepositoryListOptions.DEFAULT));
+    verify(localDataSource, times(1)).saveAccountSync(accountSync.capture());
+    assertThat(accountSync.getValue().getEtag()).isEqualTo("\"etag\"");
+  }
+
+  /**
+   * While the circuit is open, {@link GitHubInfraRepository#refreshUserRepositories(String, RepositoryListOptions)}
+   * serves cached repositories marked as stale and leaves the last synced time alone.
+   */
+  @Test
+  public void refreshUserRepositories_circuitOpen_servesStaleCache() throws Exception {
+    when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(Collections.singletonList(new RepositoryEntity()));
+    when(remoteDataSource.getUserRepositoriesIfModified(eq("srym"), isNull(), isNull(), eq(RepositoryListOptions.DEFAULT))).thenThrow(new CircuitOpenException(0L));
+
+    RefreshedRepositories refreshed = repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT);
+    assertThat(refreshed.isStale()).isTrue();
+    assertThat(refreshed.getRepositories()).hasSize(1);
+    verify(localDataSource, never()).saveAccountSync(any(RoomAccountSyncEntity.class));
+  }
+
+  /**
+   * The incremental refresh falls back to the cache in the same way.
+   */
+  @Test
+  public void refreshUserRepositoriesIncrementally_circuitOpen_servesStaleCache() throws Exception {
+    ZonedDateTime latestUpdatedAt = repositoriesSrym.get(0).getUpdatedAt();
+    when(localDataSource.getLatestUpdatedAt(eq("srym"))).thenReturn(latestUpdatedAt);
+    when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(Collections.singletonList(new RepositoryEntity()));
+    when(remoteDataSource.getUserRepositoriesUpdatedAfter(eq("srym"), eq(latestUpdatedAt), eq(RepositoryListOptions.MAX_PER_PAGE))).thenThrow(new CircuitOpenException(0L));
+
+    assertThat(repository.refreshUserRepositoriesIncrementally("srym", RepositoryListOptions.DEFAULT).isStale()).isTrue();
+    verify(localDataSource, never()).insertRepositoriesAndAccounts(anyList(), anyList());
+  }
+
+  /**
+   * With nothing cached there is nothing to serve, so the open circuit is reported as it is.
+   */
+  @Test(expected = CircuitOpenException.class)
+  public void refreshUserRepositories_circuitOpen_coldCache() throws Exception {
+    when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(null);
+    when(remoteDataSource.getUserRepositoriesIfModified(eq("srym"), isNull(), isNull(), eq(RepositoryListOptions.DEFAULT))).thenThrow(new CircuitOpenException(0L));
+
+    repository.refreshUserRepositories("srym", RepositoryListOptions.DEFAULT);
+  }
+
+  /**
+   * {@link GitHubInfraRepository#refreshUserRepositoriesIncrementally(String, RepositoryListOptions)} asks only for repositories
+   * updated after the newest cached one and inserts just those, without marking the cache as synced.
+   */
+  @Test
+  public void refreshUserRepositoriesIncrementally_delta() throws Exception {
+    ZonedDateTime latestUpdatedAt = repositoriesSrym.get(1).getUpdatedAt();
+    RepositoryRows delta = new RepositoryRows(repositoriesSrym.subList(0, 1), Collections.singletonList(srym));
+    when(localDataSource.getLatestUpdatedAt(eq("srym"))).thenReturn(latestUpdatedAt);
+    when(remoteDataSource.getUserRepositoriesUpdatedAfter(eq("srym"), eq(latestUpdatedAt), eq(RepositoryListOptions.MAX_PER_PAGE))).thenReturn(delta);
+    when(localDataSource.getUserRepositories(eq("srym"))).thenReturn(Arrays.asList(new RepositoryEntity(), new RepositoryEntity()));
+
+    assertThat(repository.refreshUserRepositoriesIncrementally("srym", RepositoryListOptions.DEFAULT).getRepositories()).hasSize(2);
+    verify(localDataSource, times(1)).insertRepositoriesAndAccounts(anyList(), anyList());
+    verify(localDataSource, never()).syncRepositoriesAndAccounts(anyString(), anyList(), anyList());
+    verify(remoteDataSource, never()).getUserRepositoriesIfModified(anyString(), any(), any(), any());
+    verify(localDataSource, never()).saveAccountSync(any(RoomAccountSyncEntity.class));
+  }
+
+  /**
+   * {@link GitHubInfraRepository#isStale(String)} compares the last synced time with {@link FreshnessPolicy}.
+   */
+  @Test
+  public void isStale() throws Exception {
+    assertThat(repository.isStale("srym")).isTrue();
+
+    when(localDataSource.getAccountSync(eq("srym"))).thenReturn(new RoomAccountSyncEntity("srym", null, null, System.currentTimeMillis()));
+    assertThat(repository.isStale("srym")).isFalse();
+
+    when(localDataSource.getAccountSync(eq("srym"))).thenReturn(new RoomAccountSyncEntity("srym", null, null, System.currentTimeMillis() - FreshnessPolicy.DEFAULT_TTL_MILLIS - 1));
+    assertThat(repository.isStale("srym")).isTrue();
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.ZonedDateTime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.AccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local Unit Test for {@link GitHubMemoryDataSource}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class GitHubMemoryDataSourceTest {
+  private AccountEntity srym = new AccountEntity(1192694, "srym", "https://avatars1.githubusercontent.com/u/1192694?v=4", "https://api.github.com/users/srym");
+  private List<RepositoryEntity> repositoriesSrym = Arrays.asList(
+      new RepositoryEntity(
+          5681402,
+          "dotfiles",
+          "srym/dotfiles",
+          "https://github.com/srym/dotfile",
+          false,
+          "this is description",
+          srym,
+          ZonedDateTime.parse("2012-09-05T02:17:05Z"),
+          ZonedDateTime.parse("2018-01-26T05:21:03Z"),
+          ZonedDateTime.parse("2018-01-26T05:21:02Z")
+      )
+  );
+
+  private GitHubLocalDataSource delegate;
+  private GitHubMemoryDataSource memoryDataSource;
+
+  @Before
+  public void setUp() throws Exception {
+    delegate = mock(GitHubLocalDataSource.class);
+    when(delegate.getUserRepositories(eq("srym"))).thenReturn(repositoriesSrym);
+    memoryDataSource = new GitHubMemoryDataSource(delegate, 1024 * 1024);
+  }
+
+  @Test
+  public void getUserRepositories_secondCall_hitsMemory() throws Exception {
+    assertThat(memoryDataSource.getUserRepositories("srym")).hasSize(1);
+    assertThat(memoryDataSource.getUserRepositories("srym")).hasSize(1);
+
+    verify(delegate, times(1)).getUserRepositories(eq("srym"));
+    assertThat(memoryDataSource.missCount()).isEqualTo(1);
+    assertThat(memoryDataSource.hitCount()).isEqualTo(1);
+    assertThat(memoryDataSource.size()).isEqualTo(GitHubMemoryDataSource.estimateBytes(repositoriesSrym));
+  }
+
+  @Test
+  public void syncRepositoriesAndAccounts_invalidates() throws Exception {
+    memoryDataSource.getUserRepositories("srym");
+    memoryDataSource.syncRepositoriesAndAccounts("srym", Collections.emptyList(), Collections.emptyList());
+    memoryDataSource.getUserRepositories("srym");
+
+    verify(delegate, times(1)).syncRepositoriesAndAccounts(eq("srym"), anyList(), anyList());
+    verify(delegate, times(2)).getUserRepositories(eq("srym"));
+  }
+
+  @Test
+  public void insertRepositoriesAndAccounts_invalidatesOwners() throws Exception {
+    memoryDataSource.getUserRepositories("srym");
+    memoryDataSource.insertRepositoriesAndAccounts(Collections.emptyList(), Collections.singletonList(new RoomAccountEntity(srym.getId(), srym.getLogin(), srym.getAvatarUrl(), srym.getUrl())));
+    memoryDataSource.getUserRepositories("srym");
+
+    verify(delegate, times(2)).getUserRepositories(eq("srym"));
+  }
+
+  @Test
+  public void getUserRepositories_overBudget_evicts() throws Exception {
+    memoryDataSource = new GitHubMemoryDataSource(delegate, GitHubMemoryDataSource.estimateBytes(repositoriesSrym));
+    when(delegate.getUserRepositories(eq("ymnder"))).thenReturn(repositoriesSrym);
+
+    memoryDataSource.getUserRepositories("srym");
+    memoryDataSource.getUserRepositories("ymnder");
+
+    assertThat(memoryDataSource.evictionCount()).isEqualTo(1);
+  }
+}
@@ -8,9 +8,12 @@ import org.mockito.Mockito;
 import org.robolectric.RuntimeEnvironment;
 import org.threeten.bp.ZonedDateTime;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao.RoomRepositoryDao;
@@ -27,6 +30,7 @@ import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyObject;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -117,13 +121,31 @@ public class GitHubRoomDataSourceTest {
   }
 
   /**
-   * {@link GitHubRoomDataSource#deleteAndInsertRepositoriesAndAccounts(String, List, List)} を呼ぶと内部で {@link RoomRepositoryDao#deleteAndInsertRepositoriesAndAccounts(String, List, List)} が呼ばれることを<code>verify()</code>しよう。
+   * {@link GitHubRoomDataSource#syncRepositoriesAndAccounts(String, List, List)} を呼ぶと内部で {@link RoomRepositoryDao#syncRepositoriesAndAccounts(String, List, List)} が呼ばれることを<code>verify()</code>しよう。
    */
   @Test
-  public void deleteAndInsertRepositoriesAndAccounts() throws Exception {
-    gitHubRoomDataSource.deleteAndInsertRepositoriesAndAccounts("srym", repositoriesSrym, Arrays.asList(srym));
+  public void syncRepositoriesAndAccounts() throws Exception {
+    gitHubRoomDataSource.syncRepositoriesAndAccounts("srym", repositoriesSrym, Arrays.asList(srym));
 
-    verify(repositoryDao, times(1)).deleteAndInsertRepositoriesAndAccounts(eq("srym"), anyList(), anyList());
+    verify(repositoryDao, times(1)).syncRepositoriesAndAccounts(eq("srym"), anyList(), anyList());
+  }
+
+  /**
+   * Writes run on the writer thread and are done by the time the call returns.
+   */
+  @Test
+  public void insertRepositoriesAndAccounts_onWriteExecutor() throws Exception {
+    AppDatabase db = mock(AppDatabase.class);
+    when(db.repositoryDao()).thenReturn(repositoryDao);
+    ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    Thread writer = writeExecutor.submit(Thread::currentThread).get();
+    List<Thread> writingThreads = new ArrayList<>();
+    doAnswer(invocation -> writingThreads.add(Thread.currentThread())).when(repositoryDao).insertRepositoriesAndAccounts(anyList(), anyList());
+
+    new GitHubRoomDataSource(db, mapper, writeExecutor).insertRepositoriesAndAccounts(repositoriesSrym, Arrays.asList(srym));
+
+    assertThat(writingThreads).containsExactly(writer);
+    writeExecutor.shutdown();
   }
 
 }
\ No newline at end of file
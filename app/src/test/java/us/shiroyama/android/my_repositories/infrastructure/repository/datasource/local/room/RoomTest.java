@@ -17,7 +17,7 @@ import java.util.List;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao.RoomAccountDao;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao.RoomRepositoryDao;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.AppDatabase;
-import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DatabaseProvider;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.TestDatabaseProvider;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
@@ -37,7 +37,7 @@ public class RoomTest {
   @Before
   public void setUp() throws Exception {
     Context context = RuntimeEnvironment.application.getApplicationContext();
-    db = new DatabaseProvider().createDatabase(context);
+    db = TestDatabaseProvider.createMainThreadDatabase(context);
   }
 
   @Test
@@ -230,4 +230,58 @@ public class RoomTest {
         .isNotEmpty()
         .hasSize(2);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void syncRepositoriesAndAccounts_writesOnlyDiff() throws Exception {
+    RoomAccountEntity srym = new RoomAccountEntity(1192694, "srym", "https://avatars1.githubusercontent.com/u/1192694?v=4", "https://api.github.com/users/srym");
+    RoomRepositoryEntity dotfiles = new RoomRepositoryEntity(
+        5681402,
+        "dotfiles",
+        "srym/dotfiles",
+        "https://github.com/srym/dotfile",
+        false,
+        "this is description",
+        1192694,
+        ZonedDateTime.parse("2012-09-05T02:17:05Z"),
+        ZonedDateTime.parse("2018-01-26T05:21:03Z"),
+        ZonedDateTime.parse("2018-01-26T05:21:02Z")
+    );
+    RoomRepositoryEntity chat = new RoomRepositoryEntity(
+        64338388,
+        "FirebaseRealTimeChat",
+        "srym/FirebaseRealTimeChat",
+        "https://github.com/srym",
+        false,
+        "Sample real-time chat application using Firebase",
+        1192694,
+        ZonedDateTime.parse("2016-07-27T20:08:52Z"),
+        ZonedDateTime.parse("2018-01-14T02:27:54Z"),
+        ZonedDateTime.parse("2017-02-15T23:52:13Z")
+    );
+    RoomRepositoryEntity updatedChat = new RoomRepositoryEntity(
+        64338388,
+        "FirebaseRealTimeChat",
+        "srym/FirebaseRealTimeChat",
+        "https://github.com/srym",
+        false,
+        "Sample real-time chat application using Firebase",
+        1192694,
+        ZonedDateTime.parse("2016-07-27T20:08:52Z"),
+        ZonedDateTime.parse("2018-02-14T02:27:54Z"),
+        ZonedDateTime.parse("2018-02-14T02:27:54Z")
+    );
+
+    RoomRepositoryDao repositoryDao = db.repositoryDao();
+    // 2 repositories and 1 account
+    assertThat(repositoryDao.syncRepositoriesAndAccounts("srym", Arrays.asList(dotfiles, chat), Arrays.asList(srym))).isEqualTo(3);
+    // nothing changed
+    assertThat(repositoryDao.syncRepositoriesAndAccounts("srym", Arrays.asList(dotfiles, chat), Arrays.asList(srym))).isEqualTo(0);
+    // 1 updated, 1 deleted
+    assertThat(repositoryDao.syncRepositoriesAndAccounts("srym", Arrays.asList(updatedChat), Arrays.asList(srym))).isEqualTo(2);
+
+    List<RepoWithAccount> repos = repositoryDao.findByAccount("srym");
+    assertThat(repos).hasSize(1);
+    assertThat(repos.get(0).repository.getId()).isEqualTo(64338388L);
+    assertThat(repos.get(0).repository.getUpdatedAt().toEpochSecond()).isEqualTo(ZonedDateTime.parse("2018-02-14T02:27:54Z").toEpochSecond());
+  }
+}
@@ -9,7 +9,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.AppDatabase;
-import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DatabaseProvider;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.TestDatabaseProvider;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -29,7 +29,7 @@ public class RoomAccountDaoTest {
   @Before
   public void setUp() throws Exception {
     Context context = RuntimeEnvironment.application.getApplicationContext();
-    db = new DatabaseProvider().createDatabase(context);
+    db = TestDatabaseProvider.createMainThreadDatabase(context);
   }
 
   @Test
@@ -0,0 +1,97 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.AppDatabase;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.TestDatabaseProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs <code>EXPLAIN QUERY PLAN</code> for the DAO queries and fails on a full table scan or a temporary sort.
+ * <p>
+ * <code>getAll()</code> reads whole tables by design and is not checked.
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+@RunWith(RobolectricTestRunner.class)
+public class RoomQueryPlanTest {
+  private AppDatabase db;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = RuntimeEnvironment.application.getApplicationContext();
+    db = TestDatabaseProvider.createMainThreadDatabase(context);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    db.close();
+  }
+
+  @Test
+  public void queries_useIndices() throws Exception {
+    Map<String, String> queries = new LinkedHashMap<>();
+    queries.put("findByAccountId", RoomRepositoryDao.FIND_BY_ACCOUNT_ID);
+    queries.put("findByAccount", RoomRepositoryDao.FIND_BY_ACCOUNT);
+    queries.put("findPageByAccount", RoomRepositoryDao.FIND_PAGE_BY_ACCOUNT);
+    queries.put("findPageByAccountAfter", RoomRepositoryDao.FIND_PAGE_BY_ACCOUNT_AFTER);
+    queries.put("findLatestUpdatedAt", RoomRepositoryDao.FIND_LATEST_UPDATED_AT);
+    queries.put("deleteRepositoriesByIds", RoomRepositoryDao.DELETE_REPOSITORIES_BY_IDS);
+    queries.put("findAccountIdByLogin", RoomRepositoryDao.FIND_ACCOUNT_ID_BY_LOGIN);
+    queries.put("findVersionsByAccountId", RoomRepositoryDao.FIND_VERSIONS_BY_ACCOUNT_ID);
+    queries.put("findAccountsByIds", RoomRepositoryDao.FIND_ACCOUNTS_BY_IDS);
+    queries.put("findByIds", RoomRepositoryDao.FIND_BY_IDS);
+    queries.put("RoomAccountDao.findByAccount", RoomAccountDao.FIND_BY_ACCOUNT);
+    queries.put("RoomAccountSyncDao.findByAccount", RoomAccountSyncDao.FIND_BY_ACCOUNT);
+
+    for (Map.Entry<String, String> query : queries.entrySet()) {
+      List<String> plan = explain(query.getValue());
+      assertThat(plan).as(query.getKey()).isNotEmpty();
+      for (String step : plan) {
+        assertThat(step.startsWith("SCAN")).as(query.getKey() + ": " + step).isFalse();
+        assertThat(step).as(query.getKey()).doesNotContain("TEMP B-TREE");
+      }
+    }
+  }
+
+  /**
+   * Sorting by <code>updated_at</code> is served by the index rather than a temporary B-tree.
+   */
+  @Test
+  public void findByAccount_readsIndexInOrder() throws Exception {
+    boolean usesIndex = false;
+    for (String step : explain(RoomRepositoryDao.FIND_BY_ACCOUNT)) {
+      usesIndex |= step.contains("index_repository_account_id_updated_at_id");
+    }
+    assertThat(usesIndex).isTrue();
+  }
+
+  /**
+   * Named parameters are left unbound, which is enough for planning
+   */
+  private List<String> explain(String sql) {
+    List<String> plan = new ArrayList<>();
+    try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query("EXPLAIN QUERY PLAN " + sql)) {
+      int detail = cursor.getColumnIndexOrThrow("detail");
+      while (cursor.moveToNext()) {
+        plan.add(cursor.getString(detail));
+      }
+    }
+    return plan;
+  }
+}
@@ -2,6 +2,8 @@ package us.shiroyama.android.my_repositories.infrastructure.repository.datasourc
 
 import android.content.Context;
 
+import com.annimon.stream.Stream;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -16,7 +18,9 @@ import java.util.List;
 
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.AppDatabase;
-import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DatabaseProvider;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.DateConverter;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.RepositoryFtsTable;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.TestDatabaseProvider;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepoWithAccount;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
@@ -98,7 +102,7 @@ public class RoomRepositoryDaoTest {
   @Before
   public void setUp() throws Exception {
     Context context = RuntimeEnvironment.application.getApplicationContext();
-    db = new DatabaseProvider().createDatabase(context);
+    db = TestDatabaseProvider.createMainThreadDatabase(context);
   }
 
   /**
@@ -148,6 +152,54 @@ public class RoomRepositoryDaoTest {
     assertThat(roomRepositoryDao.findByAccount(ymnder.getLogin())).isNotEmpty().hasSize(2);
   }
 
+  /**
+   * Pages follow <code>updated_at</code> descending and each seeks past the last repository of the previous one.
+   */
+  @Test
+  public void findPageByAccount() throws Exception {
+    RoomRepositoryDao roomRepositoryDao = db.repositoryDao();
+    roomRepositoryDao.insertRepositoriesAndAccounts(repositoriesSrym, Collections.singletonList(srym));
+    roomRepositoryDao.insertRepositoriesAndAccounts(repositoriesYmnder, Collections.singletonList(ymnder));
+
+    List<RepoWithAccount> firstPage = roomRepositoryDao.findPageByAccount(srym.getLogin(), 1);
+    assertThat(firstPage).hasSize(1);
+    RoomRepositoryEntity last = firstPage.get(0).repository;
+    assertThat(last.getName()).isEqualTo("dotfiles");
+
+    List<RepoWithAccount> secondPage = roomRepositoryDao.findPageByAccountAfter(srym.getLogin(), DateConverter.fromDateToTime(last.getUpdatedAt()), last.getId(), 1);
+    assertThat(secondPage).hasSize(1);
+    last = secondPage.get(0).repository;
+    assertThat(last.getName()).isEqualTo("FirebaseRealTimeChat");
+
+    assertThat(roomRepositoryDao.findPageByAccountAfter(srym.getLogin(), DateConverter.fromDateToTime(last.getUpdatedAt()), last.getId(), 1)).isEmpty();
+  }
+
+  /**
+   * The search index follows the transactions, and matches in names rank above matches in descriptions.
+   */
+  @Test
+  public void search() throws Exception {
+    RoomRepositoryDao roomRepositoryDao = db.repositoryDao();
+    roomRepositoryDao.insertRepositoriesAndAccounts(repositoriesSrym, Collections.singletonList(srym));
+    roomRepositoryDao.insertRepositoriesAndAccounts(repositoriesYmnder, Collections.singletonList(ymnder));
+
+    assertThat(Stream.of(roomRepositoryDao.search(RepositoryFtsTable.toMatchQuery("Conference"), 10))
+        .map(repoWithAccount -> repoWithAccount.repository.getName())
+        .toList()).containsExactly("conference-app-2018");
+    assertThat(Stream.of(roomRepositoryDao.search(RepositoryFtsTable.toMatchQuery("droid"), 10))
+        .map(repoWithAccount -> repoWithAccount.repository.getName())
+        .toList()).hasSize(2).containsOnly("conference-app-2018", "WidgetSample");
+    assertThat(roomRepositoryDao.search(RepositoryFtsTable.toMatchQuery("droid"), 1)).hasSize(1);
+
+    roomRepositoryDao.syncRepositoriesAndAccounts(ymnder.getLogin(), repositoriesYmnder.subList(1, 2), Collections.singletonList(ymnder));
+    assertThat(roomRepositoryDao.search(RepositoryFtsTable.toMatchQuery("conference"), 10)).isEmpty();
+
+    assertThat(Stream.of(roomRepositoryDao.search(RepositoryFtsTable.toMatchQuery("real-time chat"), 10))
+        .map(repoWithAccount -> repoWithAccount.account.getLogin())
+        .toList()).containsExactly(srym.getLogin());
+    assertThat(RepositoryFtsTable.toMatchQuery(" \"* -")).isNull();
+  }
+
   /**
    * 指定したレポジトリデータをすべて挿入する {@link RoomRepositoryDao#insertAllRepositories(RoomRepositoryEntity...)} を検証しよう。
    */
@@ -212,28 +264,4 @@ public class RoomRepositoryDaoTest {
     assertThat(roomRepositoryDao.findByAccount(srym.getLogin())).isNotEmpty().hasSize(2);
   }
 
-  /**
-   * 指定したアカウントが持つレポジトリ情報をすべて消して後から追加する {@link RoomRepositoryDao#deleteAndInsertRepositoriesAndAccounts(String, List, List)} を検証しよう。
-   */
-  @Test
-  public void deleteAndInsertRepositoriesAndAccounts() throws Exception {
-    RoomRepositoryDao roomRepositoryDao = db.repositoryDao();
-    RoomAccountDao accountDao = db.accountDao();
-    roomRepositoryDao.insertRepositoriesAndAccounts(repositoriesSrym, Collections.singletonList(srym));
-    assertThat(roomRepositoryDao.getAll())
-            .isNotEmpty()
-            .hasSize(2);
-    assertThat(accountDao.getAll())
-            .isNotEmpty()
-            .hasSize(1);
-
-    roomRepositoryDao.deleteAndInsertRepositoriesAndAccounts("srym", Collections.singletonList(repositoriesSrym.get(0)), Collections.singletonList(srym));
-    assertThat(roomRepositoryDao.getAll())
-            .isNotEmpty()
-            .hasSize(1);
-    assertThat(accountDao.getAll())
-            .isNotEmpty()
-            .hasSize(1);
-  }
-
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db;
+
+import android.arch.persistence.room.Room;
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+/**
+ * {@link AppDatabase} for local unit tests, which run on the main thread under Robolectric
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public final class TestDatabaseProvider {
+  private TestDatabaseProvider() {
+  }
+
+  /**
+   * @return empty in-memory database with the same schema as the one of {@link DatabaseProvider}
+   */
+  @NonNull
+  public static AppDatabase createMainThreadDatabase(@NonNull Context context) {
+    return new DatabaseProvider().configure(Room.inMemoryDatabaseBuilder(context.getApplicationContext(), AppDatabase.class))
+        .allowMainThreadQueries()
+        .build();
+  }
+}
@@ -0,0 +1,74 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.mapper;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.threeten.bp.ZonedDateTime;
+
+import java.util.Arrays;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.AppDatabase;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.db.TestDatabaseProvider;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomAccountEntity;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RoomRepositoryEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link RepositoryCursorReader}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+@RunWith(RobolectricTestRunner.class)
+public class RepositoryCursorReaderTest {
+  private AppDatabase db;
+
+  @Before
+  public void setUp() throws Exception {
+    Context context = RuntimeEnvironment.application.getApplicationContext();
+    db = TestDatabaseProvider.createMainThreadDatabase(context);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    db.close();
+  }
+
+  /**
+   * Reads the same repositories as {@link RepositoryEntityMapper#convertList(List)} with one owner instance per account
+   */
+  @Test
+  public void read() throws Exception {
+    RoomAccountEntity srym = new RoomAccountEntity(1192694, "srym", "https://avatars1.githubusercontent.com/u/1192694?v=4", "https://api.github.com/users/srym");
+    db.repositoryDao().insertRepositoriesAndAccounts(Arrays.asList(
+        new RoomRepositoryEntity(5681402, "dotfiles", "srym/dotfiles", "https://github.com/srym/dotfile", false, null, 1192694,
+            ZonedDateTime.parse("2012-09-05T02:17:05Z"), ZonedDateTime.parse("2018-01-26T05:21:03Z"), ZonedDateTime.parse("2018-01-26T05:21:02Z")),
+        new RoomRepositoryEntity(64338388, "FirebaseRealTimeChat", "srym/FirebaseRealTimeChat", "https://github.com/srym", true, "Sample real-time chat application using Firebase", 1192694,
+            ZonedDateTime.parse("2016-07-27T20:08:52Z"), ZonedDateTime.parse("2018-01-14T02:27:54Z"), ZonedDateTime.parse("2017-02-15T23:52:13Z"))
+    ), Arrays.asList(srym));
+
+    List<RepositoryEntity> expected = RepositoryEntityMapper.Factory.INSTANCE.get().convertList(db.repositoryDao().findByAccount("srym"));
+    List<RepositoryEntity> actual;
+    try (Cursor cursor = db.repositoryDao().findCursorByAccount("srym")) {
+      actual = new RepositoryCursorReader().read(cursor);
+    }
+
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i)).isEqualToIgnoringGivenFields(expected.get(i), "owner");
+      assertThat(actual.get(i).getOwner()).isEqualToComparingFieldByField(expected.get(i).getOwner());
+    }
+    assertThat(actual.get(0).getDescription()).isNull();
+    assertThat(actual.get(1).isPrivate()).isTrue();
+    assertThat(actual.get(0).getOwner()).isSameAs(actual.get(1).getOwner());
+  }
+}
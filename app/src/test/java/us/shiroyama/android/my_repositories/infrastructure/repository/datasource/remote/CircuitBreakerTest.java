@@ -0,0 +1,111 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+
+import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.CircuitOpenException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local Unit Test for {@link CircuitBreaker}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class CircuitBreakerTest {
+  private static final long OPEN_MILLIS = 1000L;
+
+  private long now;
+
+  private CircuitBreaker circuitBreaker;
+
+  @Before
+  public void setUp() throws Exception {
+    now = 0L;
+    circuitBreaker = new CircuitBreaker(4, 2, 0.5f, OPEN_MILLIS) {
+      @Override
+      long currentTimeMillis() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void failureRate_opensOnceMinCallsRecorded() throws Exception {
+    circuitBreaker.onFailure();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+    circuitBreaker.onSuccess();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(circuitBreaker.tryAcquire()).isFalse();
+    assertThat(circuitBreaker.getRetryAtMillis()).isEqualTo(OPEN_MILLIS);
+  }
+
+  /**
+   * Old outcomes leave the window, so a failure long ago does not add up with recent ones.
+   */
+  @Test
+  public void failureRate_slidingWindow() throws Exception {
+    circuitBreaker.onFailure();
+    for (int i = 0; i < 4; i++) {
+      circuitBreaker.onSuccess();
+    }
+    circuitBreaker.onFailure();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  public void halfOpen_singleTrial() throws Exception {
+    circuitBreaker.onFailure();
+    circuitBreaker.onFailure();
+
+    now = OPEN_MILLIS;
+    assertThat(circuitBreaker.tryAcquire()).isTrue();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+    circuitBreaker.onFailure();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(circuitBreaker.getRetryAtMillis()).isEqualTo(OPEN_MILLIS * 2);
+
+    now = OPEN_MILLIS * 2;
+    assertThat(circuitBreaker.tryAcquire()).isTrue();
+    circuitBreaker.onSuccess();
+    assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  /**
+   * Only transient failures open the circuit, and an open one rejects calls without reaching the API.
+   */
+  @Test
+  public void dataSource_failsFastWhileOpen() throws Exception {
+    GitHubRemoteDataSource delegate = mock(GitHubRemoteDataSource.class);
+    when(delegate.getUserRepositories(eq("xxx"))).thenThrow(new ApiException(404, null));
+    when(delegate.getUserRepositories(eq("srym"))).thenThrow(new SocketTimeoutException());
+    CircuitBreakingRemoteDataSource dataSource = new CircuitBreakingRemoteDataSource(delegate, circuitBreaker);
+
+    for (String account : new String[]{"xxx", "xxx", "srym", "srym", "srym"}) {
+      try {
+        dataSource.getUserRepositories(account);
+        fail("exception expected");
+      } catch (CircuitOpenException e) {
+        assertThat(account).isEqualTo("srym");
+        assertThat(e.getRetryAtMillis()).isEqualTo(OPEN_MILLIS);
+      } catch (Exception expected) {
+        // failure from the delegate
+      }
+    }
+    verify(delegate, times(2)).getUserRepositories(eq("xxx"));
+    verify(delegate, times(2)).getUserRepositories(eq("srym"));
+  }
+}
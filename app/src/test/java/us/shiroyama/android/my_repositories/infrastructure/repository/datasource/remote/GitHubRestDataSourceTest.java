@@ -8,23 +8,32 @@ import org.json.JSONTokener;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.threeten.bp.ZonedDateTime;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import okhttp3.Headers;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
+import us.shiroyama.android.my_repositories.common.CancellationToken;
 import us.shiroyama.android.my_repositories.common.GsonProvider;
 import us.shiroyama.android.my_repositories.common.OkHttpProvider;
+import us.shiroyama.android.my_repositories.common.RateLimitBudget;
 import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
 import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
 import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote.service.GitHubService;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -39,6 +48,14 @@ import static org.assertj.core.api.Fail.fail;
 public class GitHubRestDataSourceTest {
   private final MockWebServer mockWebServer = new MockWebServer();
 
+  private final AtomicInteger hedgedRequests = new AtomicInteger();
+
+  private final AtomicInteger flakyFirstPageRequests = new AtomicInteger();
+
+  private final AtomicInteger flakySecondPageRequests = new AtomicInteger();
+
+  private GitHubService gitHubService;
+
   private GitHubRestDataSource gitHubRestDataSource;
 
   /**
@@ -56,6 +73,48 @@ public class GitHubRestDataSourceTest {
         if (request.getPath().matches("/users/srym/repos/?.*")) {
           return new MockResponse().setBody(readJsonFromResources("users_srym_repos.json")).setResponseCode(200);
         }
+        if (request.getPath().matches("/users/paged/repos/?.*[?&]page=1(&.*)?")) {
+          return new MockResponse()
+              .setBody(readJsonFromResources("users_srym_repos.json"))
+              .setHeader(LinkHeader.HEADER, "<" + mockWebServer.url("/users/paged/repos?page=2") + ">; rel=\"next\", <" + mockWebServer.url("/users/paged/repos?page=2") + ">; rel=\"last\"")
+              .setResponseCode(200);
+        }
+        if (request.getPath().matches("/users/paged/repos/?.*[?&]page=2(&.*)?")) {
+          return new MockResponse().setBody(readJsonFromResources("users_ymnder_repos.json")).setResponseCode(200);
+        }
+        if (request.getPath().matches("/users/slow/repos/?.*")) {
+          return new MockResponse().setBody(readJsonFromResources("users_srym_repos.json")).setBodyDelay(10, TimeUnit.SECONDS).setResponseCode(200);
+        }
+        if (request.getPath().matches("/users/slowBody/repos/?.*")) {
+          return new MockResponse().setBody(readJsonFromResources("users_srym_repos.json")).setBodyDelay(500, TimeUnit.MILLISECONDS).setResponseCode(200);
+        }
+        if (request.getPath().matches("/users/hedged/repos/?.*")) {
+          // only the first request is stuck on a slow connection
+          MockResponse response = new MockResponse().setBody(readJsonFromResources("users_srym_repos.json")).setResponseCode(200);
+          return hedgedRequests.getAndIncrement() == 0 ? response.setBodyDelay(10, TimeUnit.SECONDS) : response;
+        }
+        if (request.getPath().matches("/users/flaky/repos/?.*[?&]page=1(&.*)?")) {
+          flakyFirstPageRequests.incrementAndGet();
+          return new MockResponse()
+              .setBody(readJsonFromResources("users_srym_repos.json"))
+              .setHeader(LinkHeader.HEADER, "<" + mockWebServer.url("/users/flaky/repos?page=2") + ">; rel=\"next\", <" + mockWebServer.url("/users/flaky/repos?page=2") + ">; rel=\"last\"")
+              .setResponseCode(200);
+        }
+        if (request.getPath().matches("/users/flaky/repos/?.*[?&]page=2(&.*)?")) {
+          // only the first attempt of the second page fails
+          return flakySecondPageRequests.getAndIncrement() == 0
+              ? new MockResponse().setResponseCode(503)
+              : new MockResponse().setBody(readJsonFromResources("users_ymnder_repos.json")).setResponseCode(200);
+        }
+        if (request.getPath().matches("/users/limited/repos/?.*")) {
+          // reset already passed, so the shared budget is not left exhausted for other tests
+          return new MockResponse()
+              .setBody("{\"message\": \"API rate limit exceeded\"}")
+              .setHeader(RateLimitBudget.HEADER_LIMIT, "60")
+              .setHeader(RateLimitBudget.HEADER_REMAINING, "0")
+              .setHeader(RateLimitBudget.HEADER_RESET, "1")
+              .setResponseCode(403);
+        }
         if (request.getPath().matches("/users/ymnder/repos/?.*")) {
           return new MockResponse().setBody(readJsonFromResources("users_ymnder_repos.json")).setResponseCode(200);
         }
@@ -71,8 +130,8 @@ public class GitHubRestDataSourceTest {
         .client(OkHttpProvider.INSTANCE.get())
         .build();
 
-    GitHubService gitHubService = retrofit.create(GitHubService.class);
-    gitHubRestDataSource = new GitHubRestDataSource(GsonProvider.INSTANCE.get(), gitHubService);
+    gitHubService = retrofit.create(GitHubService.class);
+    gitHubRestDataSource = new GitHubRestDataSource.Builder(GsonProvider.INSTANCE.get(), gitHubService).build();
   }
 
   @After
@@ -104,6 +163,178 @@ public class GitHubRestDataSourceTest {
     assertThat(ret.get(0).getName()).isEqualTo(("conference-app-2018"));
   }
 
+  /**
+   * Link header with rel="last" makes the remaining pages to be fetched and merged in updated_at descending order.
+   */
+  @Test
+  public void getUserRepositories_multiplePages_returnsMergedResults() throws Exception {
+    List<RepositoryEntity> ret = gitHubRestDataSource.getUserRepositories("paged");
+    assertThat(ret).hasSize(53);
+    assertThat(ret.get(0).getName()).isEqualTo("conference-app-2018");
+    for (int i = 1; i < ret.size(); i++) {
+      assertThat(ret.get(i - 1).getUpdatedAt().isBefore(ret.get(i).getUpdatedAt())).isFalse();
+    }
+  }
+
+  /**
+   * Paging stops at the first repository updated before the given time, so the second page is never requested.
+   */
+  @Test
+  public void getUserRepositoriesUpdatedAfter_stopsAtKnownRepository() throws Exception {
+    RepositoryRows ret = gitHubRestDataSource.getUserRepositoriesUpdatedAfter("paged", ZonedDateTime.parse("2018-01-10T00:00:00Z"), RepositoryListOptions.MAX_PER_PAGE);
+    assertThat(ret.getRepositories()).hasSize(2);
+    assertThat(ret.getRepositories().get(0).getName()).isEqualTo("dotfiles");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  /**
+   * A repository updated in the same second as the given time may be a new change, so it is fetched again.
+   */
+  @Test
+  public void getUserRepositoriesUpdatedAfter_keepsRepositoryUpdatedInSameSecond() throws Exception {
+    RepositoryRows ret = gitHubRestDataSource.getUserRepositoriesUpdatedAfter("paged", ZonedDateTime.parse("2018-01-14T02:27:54Z"), RepositoryListOptions.MAX_PER_PAGE);
+    assertThat(ret.getRepositories()).hasSize(2);
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  /**
+   * A failed page is retried on its own, without fetching the pages before it again.
+   */
+  @Test
+  public void getUserRepositoriesIfModified_failedPage_retriedAlone() throws Exception {
+    RequestRetrier retrier = new RequestRetrier(new RetryPolicy(), new RetryBudget(), (token, millis) -> {
+    });
+    GitHubRestDataSource dataSource = new GitHubRestDataSource.Builder(GsonProvider.INSTANCE.get(), gitHubService)
+        .requestRetrier(retrier)
+        .build();
+
+    RepositoryRows ret = dataSource.getUserRepositoriesIfModified("flaky", null, null, RepositoryListOptions.DEFAULT).getRows();
+    assertThat(ret.getRepositories()).hasSize(53);
+    assertThat(flakyFirstPageRequests.get()).isEqualTo(1);
+    assertThat(flakySecondPageRequests.get()).isEqualTo(2);
+    assertThat(retrier.getMetrics().getRetries()).isEqualTo(1L);
+  }
+
+  /**
+   * Rows of every page share one account row per owner, and so do the entities built from them.
+   */
+  @Test
+  public void getUserRepositoriesIfModified_multiplePages_deduplicatesOwners() throws Exception {
+    RepositoryRows ret = gitHubRestDataSource.getUserRepositoriesIfModified("paged", null, null, RepositoryListOptions.DEFAULT).getRows();
+    assertThat(ret.getRepositories()).hasSize(53);
+    assertThat(ret.getAccounts()).extracting("login").hasSize(2).containsOnly("srym", "ymnder");
+
+    List<RepositoryEntity> entities = gitHubRestDataSource.getUserRepositories("srym");
+    assertThat(entities.get(0).getOwner()).isSameAs(entities.get(1).getOwner());
+  }
+
+  /**
+   * Cancelling the token bound to the calling thread aborts the blocking call instead of waiting for the slow body.
+   */
+  @Test(timeout = 5000L, expected = IOException.class)
+  public void getUserRepositories_cancelled_abortsCall() throws Exception {
+    CancellationToken token = new CancellationToken();
+    CancellationToken.bind(token);
+    try {
+      new Thread(() -> {
+        try {
+          Thread.sleep(200L);
+        } catch (InterruptedException ignored) {
+        }
+        token.cancel();
+      }).start();
+      gitHubRestDataSource.getUserRepositories("slow");
+    } finally {
+      CancellationToken.bind(null);
+    }
+  }
+
+  /**
+   * <code>403</code> with no remaining rate limit surfaces as {@link RateLimitException} carrying the reset time.
+   */
+  @Test
+  public void getUserRepositories_rateLimited_causedRateLimitException() throws Exception {
+    try {
+      gitHubRestDataSource.getUserRepositories("limited");
+      fail("RateLimitException expected");
+    } catch (RateLimitException e) {
+      assertThat(e.getResetAtMillis()).isEqualTo(1000L);
+      assertThat(e.getGitHubErrorEntity().getMessage()).isEqualTo("API rate limit exceeded");
+    }
+  }
+
+  /**
+   * An exhausted budget fails fast on a cold cache as well, without sending anything to the network.
+   */
+  @Test
+  public void getUserRepositoriesPreferringCache_exhaustedBudget_notSent() throws Exception {
+    RateLimitBudget exhausted = new RateLimitBudget();
+    exhausted.update(Headers.of(
+        RateLimitBudget.HEADER_LIMIT, "60",
+        RateLimitBudget.HEADER_REMAINING, "0",
+        RateLimitBudget.HEADER_RESET, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60L)
+    ));
+    GitHubRestDataSource dataSource = new GitHubRestDataSource.Builder(GsonProvider.INSTANCE.get(), gitHubService)
+        .rateLimitBudget(exhausted)
+        .build();
+
+    try {
+      dataSource.getUserRepositoriesPreferringCache("srym", RepositoryListOptions.DEFAULT);
+      fail("RateLimitException expected");
+    } catch (RateLimitException e) {
+      assertThat(e.getResetAtMillis()).isEqualTo(exhausted.getResetAtMillis());
+    }
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(0);
+  }
+
+  /**
+   * Page size and order are sent to GitHub instead of sorting locally.
+   */
+  @Test
+  public void getUserRepositoriesPreferringCache_options_sentAsQuery() throws Exception {
+    RepositoryListOptions options = RepositoryListOptions.of(RepositoryListOptions.Sort.FULL_NAME);
+    gitHubRestDataSource.getUserRepositoriesPreferringCache("srym", options);
+
+    RecordedRequest request = mockWebServer.takeRequest();
+    assertThat(request.getRequestUrl().queryParameter("sort")).isEqualTo("full_name");
+    assertThat(request.getRequestUrl().queryParameter("direction")).isEqualTo("asc");
+    assertThat(request.getRequestUrl().queryParameter("per_page")).isEqualTo("100");
+  }
+
+  /**
+   * A second request sent after the hedge delay answers while the first one is still stuck.
+   */
+  @Test(timeout = 5000L)
+  public void getUserRepositories_hedged_secondRequestWins() throws Exception {
+    RequestHedger requestHedger = new RequestHedger(0.95, 10, 5, 50L, 200L, new RateLimitBudget(), Executors.newCachedThreadPool());
+    GitHubRestDataSource hedgedDataSource = new GitHubRestDataSource.Builder(GsonProvider.INSTANCE.get(), gitHubService)
+        .pageExecutor(Executors.newSingleThreadExecutor())
+        .requestHedger(requestHedger)
+        .build();
+
+    List<RepositoryEntity> ret = hedgedDataSource.getUserRepositories("hedged");
+    assertThat(ret.get(0).getName()).isEqualTo("dotfiles");
+    assertThat(hedgedRequests.get()).isEqualTo(2);
+    assertThat(requestHedger.getMetrics().getHedges()).isEqualTo(1L);
+    assertThat(requestHedger.getMetrics().getHedgesWon()).isEqualTo(1L);
+  }
+
+  /**
+   * The hedge delay follows the time to the response headers, however long the body takes afterwards.
+   */
+  @Test(timeout = 5000L)
+  public void getUserRepositories_hedged_recordsTimeToHeaders() throws Exception {
+    RequestHedger requestHedger = new RequestHedger(0.95, 10, 1, 0L, 3000L, new RateLimitBudget(), Executors.newCachedThreadPool());
+    GitHubRestDataSource hedgedDataSource = new GitHubRestDataSource.Builder(GsonProvider.INSTANCE.get(), gitHubService)
+        .pageExecutor(Executors.newSingleThreadExecutor())
+        .requestHedger(requestHedger)
+        .build();
+
+    hedgedDataSource.getUserRepositories("slowBody");
+    assertThat(requestHedger.getMetrics().getHedges()).isEqualTo(0L);
+    assertThat(requestHedger.hedgeDelayMillis()).isLessThan(500L);
+  }
+
   /**
    * 未定義のユーザでリクエストした場合に {@link ApiException} が上がることを検証しよう。
    */
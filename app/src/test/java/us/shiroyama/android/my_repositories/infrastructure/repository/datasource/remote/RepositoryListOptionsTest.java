@@ -0,0 +1,54 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import org.junit.Test;
+import org.threeten.bp.ZonedDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import us.shiroyama.android.my_repositories.infrastructure.entity.RepositoryEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local Unit Test for {@link RepositoryListOptions}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RepositoryListOptionsTest {
+  @Test
+  public void perPage_clampedToGitHubLimits() throws Exception {
+    assertThat(new RepositoryListOptions(RepositoryListOptions.Sort.UPDATED, RepositoryListOptions.Direction.DESC, 500).getPerPage()).isEqualTo(100);
+    assertThat(new RepositoryListOptions(RepositoryListOptions.Sort.UPDATED, RepositoryListOptions.Direction.DESC, 0).getPerPage()).isEqualTo(1);
+    assertThat(RepositoryListOptions.DEFAULT.isDefaultOrder()).isTrue();
+    assertThat(RepositoryListOptions.of(RepositoryListOptions.Sort.FULL_NAME).getDirection()).isEqualTo(RepositoryListOptions.Direction.ASC);
+  }
+
+  /**
+   * Names compare case-insensitively and repositories never pushed to come last in either direction.
+   */
+  @Test
+  public void entityComparator() throws Exception {
+    RepositoryEntity dotfiles = repository(1L, "srym/dotfiles", "2018-01-01T00:00:00Z");
+    RepositoryEntity android = repository(2L, "srym/Android", "2018-02-01T00:00:00Z");
+    RepositoryEntity empty = repository(3L, "srym/empty", null);
+    List<RepositoryEntity> repositories = new ArrayList<>(Arrays.asList(dotfiles, empty, android));
+
+    Collections.sort(repositories, RepositoryListOptions.of(RepositoryListOptions.Sort.FULL_NAME).entityComparator());
+    assertThat(repositories).containsExactly(android, dotfiles, empty);
+
+    Collections.sort(repositories, RepositoryListOptions.of(RepositoryListOptions.Sort.PUSHED).entityComparator());
+    assertThat(repositories).containsExactly(android, dotfiles, empty);
+
+    Collections.sort(repositories, new RepositoryListOptions(RepositoryListOptions.Sort.PUSHED, RepositoryListOptions.Direction.ASC, 100).entityComparator());
+    assertThat(repositories).containsExactly(dotfiles, android, empty);
+  }
+
+  private RepositoryEntity repository(long id, String fullName, String pushedAt) {
+    ZonedDateTime at = ZonedDateTime.parse("2018-01-01T00:00:00Z");
+    return new RepositoryEntity(id, fullName, fullName, null, false, null, null, at, at, pushedAt == null ? null : ZonedDateTime.parse(pushedAt));
+  }
+}
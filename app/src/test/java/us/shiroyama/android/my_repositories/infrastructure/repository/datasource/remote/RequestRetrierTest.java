@@ -0,0 +1,124 @@
+package us.shiroyama.android.my_repositories.infrastructure.repository.datasource.remote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import us.shiroyama.android.my_repositories.common.CancellationToken;
+import us.shiroyama.android.my_repositories.infrastructure.exception.ApiException;
+import us.shiroyama.android.my_repositories.infrastructure.exception.RateLimitException;
+import us.shiroyama.android.my_repositories.infrastructure.repository.datasource.local.room.entity.RepositoryRows;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Fail.fail;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Local Unit Test for {@link RequestRetrier}
+ *
+ * @author Fumihiko Shiroyama
+ */
+
+public class RequestRetrierTest {
+  private static final long MAX_DELAY_MILLIS = 1000L;
+
+  private final List<Long> sleeps = new ArrayList<>();
+
+  private final CancellationToken token = new CancellationToken();
+
+  private GitHubRemoteDataSource delegate;
+
+  @Before
+  public void setUp() throws Exception {
+    delegate = mock(GitHubRemoteDataSource.class);
+  }
+
+  @Test
+  public void transientFailures_retriedWithCappedBackoff() throws Exception {
+    RemoteRepositories ok = RemoteRepositories.of(RepositoryRows.empty(), null, null);
+    when(delegate.getUserRepositoriesPreferringCache(eq("srym"), eq(RepositoryListOptions.DEFAULT)))
+        .thenThrow(new SocketTimeoutException())
+        .thenThrow(new ApiException(503, null))
+        .thenReturn(ok);
+    RequestRetrier retrier = newRetrier(new RetryBudget());
+
+    assertThat(retrier.execute(token, () -> delegate.getUserRepositoriesPreferringCache("srym", RepositoryListOptions.DEFAULT))).isSameAs(ok);
+    verify(delegate, times(3)).getUserRepositoriesPreferringCache(eq("srym"), eq(RepositoryListOptions.DEFAULT));
+    assertThat(sleeps).hasSize(2);
+    for (long delay : sleeps) {
+      assertThat(delay).isGreaterThanOrEqualTo(0L).isLessThanOrEqualTo(MAX_DELAY_MILLIS);
+    }
+    assertThat(retrier.getMetrics().getRetries()).isEqualTo(2L);
+    assertThat(retrier.getMetrics().getTotalDelayMillis()).isEqualTo(sleeps.get(0) + sleeps.get(1));
+  }
+
+  @Test
+  public void permanentFailures_notRetried() throws Exception {
+    when(delegate.getUserRepositories(eq("xxx"))).thenThrow(new ApiException(404, null));
+    when(delegate.getUserRepositories(eq("limited"))).thenThrow(new RateLimitException(0L, null, 403));
+    RequestRetrier retrier = newRetrier(new RetryBudget());
+
+    for (String account : new String[]{"xxx", "limited"}) {
+      try {
+        retrier.execute(token, () -> delegate.getUserRepositories(account));
+        fail("ApiException expected");
+      } catch (ApiException expected) {
+        verify(delegate, times(1)).getUserRepositories(eq(account));
+      }
+    }
+    assertThat(sleeps).isEmpty();
+  }
+
+  /**
+   * Once the budget is spent, failures propagate at once instead of multiplying the load on the backend.
+   */
+  @Test
+  public void exhaustedBudget_deniesRetries() throws Exception {
+    when(delegate.getUserRepositories(eq("srym"))).thenThrow(new ApiException(502, null));
+    RequestRetrier retrier = newRetrier(new RetryBudget(1, 0.0));
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        retrier.execute(token, () -> delegate.getUserRepositories("srym"));
+        fail("ApiException expected");
+      } catch (ApiException expected) {
+        assertThat(expected.getCode()).isEqualTo(502);
+      }
+    }
+    // a single retry for the first call and none for the second
+    verify(delegate, times(3)).getUserRepositories(eq("srym"));
+    assertThat(retrier.getMetrics().getRetries()).isEqualTo(1L);
+    assertThat(retrier.getMetrics().getDeniedRetries()).isEqualTo(2L);
+  }
+
+  @Test
+  public void cancelledToken_notRetried() throws Exception {
+    when(delegate.getUserRepositories(eq("srym"))).thenThrow(new SocketTimeoutException());
+    RequestRetrier retrier = newRetrier(new RetryBudget());
+    token.cancel();
+
+    try {
+      retrier.execute(token, () -> delegate.getUserRepositories("srym"));
+      fail("SocketTimeoutException expected");
+    } catch (SocketTimeoutException expected) {
+      verify(delegate, times(1)).getUserRepositories(eq("srym"));
+    }
+    assertThat(sleeps).isEmpty();
+  }
+
+  private RequestRetrier newRetrier(RetryBudget retryBudget) {
+    return new RequestRetrier(
+        new RetryPolicy(3, 100L, MAX_DELAY_MILLIS, new Random(0L)),
+        retryBudget,
+        (token, millis) -> sleeps.add(millis)
+    );
+  }
+}
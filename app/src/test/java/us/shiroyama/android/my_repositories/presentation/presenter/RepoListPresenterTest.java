@@ -2,9 +2,13 @@ package us.shiroyama.android.my_repositories.presentation.presenter;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.threeten.bp.ZonedDateTime;
 
+import java.util.Arrays;
 import java.util.Collections;
 
+import us.shiroyama.android.my_repositories.domain.model.Account;
+import us.shiroyama.android.my_repositories.domain.model.Repository;
 import us.shiroyama.android.my_repositories.domain.usecase.GetRepositories;
 import us.shiroyama.android.my_repositories.domain.usecase.executor.TaskTicket;
 import us.shiroyama.android.my_repositories.presentation.mapper.RepoViewModelMapper;
@@ -102,6 +106,126 @@ public class RepoListPresenterTest {
     verify(view, times(1)).hideProgressBar();
     verify(view, times(1)).showRepositoryList(anyList());
     verify(mapper, times(1)).convertList(anyList());
+    verify(view, never()).showStaleNotice();
+
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), true));
+    verify(view, times(1)).showStaleNotice();
+  }
+
+  /**
+   * A page carrying the param of the next one lets the list load more, whose result is appended.
+   */
+  @Test
+  public void loadMoreRepositoryList() throws Exception {
+    presenter.loadMoreRepositoryList();
+    verify(getRepositories, never()).enqueue(any(GetRepositories.Param.class));
+
+    GetRepositories.Param next = GetRepositories.Param.firstPage("srym", 2);
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), false, next, false));
+    presenter.loadMoreRepositoryList();
+    presenter.loadMoreRepositoryList();
+    verify(getRepositories, times(1)).enqueue(eq(next));
+
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), false, null, true));
+    verify(view, times(1)).appendRepositoryList(anyList());
+    presenter.loadMoreRepositoryList();
+    verify(getRepositories, times(1)).enqueue(any(GetRepositories.Param.class));
+  }
+
+  /**
+   * A refresh cancels the outstanding load of the next page and drops the page if it still arrives.
+   */
+  @Test
+  public void refreshRepositoryList_cancelsLoadMore() throws Exception {
+    TaskTicket loadMoreTicket = mock(TaskTicket.class);
+    GetRepositories.Param next = GetRepositories.Param.firstPage("srym", 2);
+    when(getRepositories.enqueue(eq(next))).thenReturn(loadMoreTicket);
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), false, next, false));
+    presenter.loadMoreRepositoryList();
+
+    presenter.refreshRepositoryList("srym");
+    verify(loadMoreTicket, times(1)).cancel(eq(true));
+    assertThat(presenter.loadingMore).isFalse();
+
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), false, null, true));
+    verify(view, never()).appendRepositoryList(anyList());
+  }
+
+  /**
+   * Both the list and its next page are cancelled when the view goes away.
+   */
+  @Test
+  public void onDestroyView_cancelsLoadMore() throws Exception {
+    TaskTicket loadMoreTicket = mock(TaskTicket.class);
+    GetRepositories.Param next = GetRepositories.Param.firstPage("srym", 2);
+    when(getRepositories.enqueue(eq(next))).thenReturn(loadMoreTicket);
+    presenter.getRepositoryList("srym");
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), false, next, false));
+    presenter.loadMoreRepositoryList();
+
+    presenter.onDestroyView();
+    verify(ticket, times(1)).cancel(eq(true));
+    verify(loadMoreTicket, times(1)).cancel(eq(true));
+  }
+
+  /**
+   * Loading another account cancels the previous load, and its results are dropped if they still arrive.
+   */
+  @Test
+  public void getRepositoryList_otherAccount_dropsPreviousResults() throws Exception {
+    presenter.getRepositoryList("srym");
+    presenter.getRepositoryList("octocat");
+    verify(ticket, times(1)).cancel(eq(true));
+
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories("srym", Collections.emptyList(), false, null, false));
+    verify(view, never()).showRepositoryList(anyList());
+
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories("octocat", Collections.emptyList(), false, null, false));
+    verify(view, times(1)).showRepositoryList(anyList());
+  }
+
+  /**
+   * A revalidated first page replaces the top of the list, and the pages loaded below it stay with the param of the next one.
+   */
+  @Test
+  public void onSuccess_firstPageUpdate_keepsLoadedPages() throws Exception {
+    GetRepositories.Param afterC = GetRepositories.Param.firstPage("srym", 2);
+    GetRepositories.Param afterB = GetRepositories.Param.firstPage("octocat", 2);
+    Repository a = newRepository(3L, "2018-01-03T00:00:00Z");
+    Repository b = newRepository(2L, "2018-01-02T00:00:00Z");
+    Repository c = newRepository(1L, "2018-01-01T00:00:00Z");
+    Repository updatedC = newRepository(1L, "2018-01-04T00:00:00Z");
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Arrays.asList(a, b, c), false, afterC, false));
+
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(null, Arrays.asList(updatedC, a), false, afterB, false, true));
+    verify(view, times(1)).updateRepositoryList(anyList());
+    verify(view, times(1)).showRepositoryList(anyList());
+    assertThat(presenter.shown).containsExactly(updatedC, a, b);
+    assertThat(presenter.next).isSameAs(afterC);
+  }
+
+  /**
+   * When nothing shown is left below the revalidated first page, the list goes on right after it.
+   */
+  @Test
+  public void onSuccess_firstPageUpdate_deleted_continuesAfterPage() throws Exception {
+    GetRepositories.Param afterB = GetRepositories.Param.firstPage("srym", 2);
+    GetRepositories.Param afterC = GetRepositories.Param.firstPage("octocat", 2);
+    Repository a = newRepository(3L, "2018-01-03T00:00:00Z");
+    Repository b = newRepository(2L, "2018-01-02T00:00:00Z");
+    Repository c = newRepository(1L, "2018-01-01T00:00:00Z");
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Arrays.asList(a, b), false, afterB, false));
+
+    // a has been deleted
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(null, Arrays.asList(b, c), false, afterC, false, true));
+    assertThat(presenter.shown).containsExactly(b, c);
+    assertThat(presenter.next).isSameAs(afterC);
+  }
+
+  private Repository newRepository(long id, String updatedAt) {
+    ZonedDateTime createdAt = ZonedDateTime.parse("2012-09-05T02:17:05Z");
+    Account owner = new Account(1192694L, "srym", "https://avatars1.githubusercontent.com/u/1192694?v=4", "https://api.github.com/users/srym");
+    return new Repository(id, "repo" + id, "srym/repo" + id, "https://github.com/srym/repo" + id, false, "", owner, createdAt, ZonedDateTime.parse(updatedAt), createdAt);
   }
 
   /**
@@ -116,4 +240,23 @@ public class RepoListPresenterTest {
     verify(view, times(1)).finishActivity();
   }
 
+  /**
+   * A failed page keeps the shown list and can be requested again.
+   */
+  @Test
+  public void onError_loadingMore_keepsList() throws Exception {
+    GetRepositories.Param next = GetRepositories.Param.firstPage("srym", 2);
+    presenter.onSuccess(new GetRepositories.OnSuccessGetRepositories(Collections.emptyList(), false, next, false));
+    presenter.loadMoreRepositoryList();
+
+    presenter.onError(new GetRepositories.OnFailureGetRepositories(new Exception("error")));
+    verify(view, times(1)).showError(anyString());
+    verify(view, never()).finishActivity();
+    assertThat(presenter.loadingMore).isFalse();
+    assertThat(presenter.loadMoreTicket).isNull();
+
+    presenter.loadMoreRepositoryList();
+    verify(getRepositories, times(2)).enqueue(eq(next));
+  }
+
 }
\ No newline at end of file